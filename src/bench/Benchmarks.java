@@ -0,0 +1,643 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package bench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import main.BaseDictionary;
+import main.Checker;
+import main.Checker.Engine;
+import main.Checker.Storage;
+import main.FileHelpers;
+import main.Mistake;
+import main.Parser;
+
+/**
+ * Measures the hot paths of TypoTattler: loading the dictionary, looking up words,
+ * guessing suggestions, parsing files and replacing mistakes. Every benchmark runs a number
+ * of warmup iterations, which are discarded, followed by the measured iterations. The score
+ * is the mean over the measured iterations, the error their standard deviation.
+ * <p>
+ * All inputs are generated from the embedded dictionary with a fixed seed, so two runs on
+ * different versions of the code work on exactly the same data and their results can be
+ * compared (e.g. with {@code --csv}). The benchmarks run in a temporary home directory,
+ * so neither the caches nor the user dictionary of the user influence the results.
+ * <p>
+ * Like JMH does with {@code @Fork}, every group of benchmarks runs in a fresh JVM by
+ * default ({@code --forks N} runs N JVMs per group, {@code --forks 0} runs everything in
+ * this JVM). The results of an operation are added to a volatile field, so the JIT cannot
+ * eliminate the work, as a {@code Blackhole} would. JMH itself is not used because the
+ * project is built with plain javac and has no dependencies.
+ * <p>
+ * Usage: {@code java -cp CLASSES:src bench.Benchmarks [--quick] [--only REGEX]
+ * [--sizes 1m,16m,256m,1g] [--corpora DIR] [--csv FILE] [--forks N]}
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+public final class Benchmarks {
+
+	/** The seed for all generated inputs, set to {@value} */
+	private static final long seed = 42;
+	/** The sizes of the corpora parsed by default */
+	private static final String defaultsizes = "1m,16m,256m,1g";
+	/** The number of occurrences of the repeated mistake for the replaceAll benchmarks */
+	private static final int[] repetitions = {10_000, 100_000};
+	/** The lengths of the words guessed for */
+	private static final int[] guesslengths = {4, 6, 8, 10, 12};
+	/** The groups of benchmarks, each forked into a JVM of its own */
+	private static final List<String> groups = List.of("checker.load", "checker.isMistake", "checker.guess",
+			"parser", "parser.replaceAll");
+	/** The first line of the CSV files */
+	private static final String csvheader = "benchmark,params,iterations,score,error,unit";
+
+	/** Receives the results of the benchmarked calls, so they cannot be optimized away */
+	private static volatile long sink;
+
+	/** The result of one benchmark */
+	private record Result(String name, String params, int count, double score, double error, String unit) {}
+
+	/** A benchmarked operation */
+	@FunctionalInterface
+	private interface Operation extends AutoCloseable {
+		/**
+		 * Runs the operation once.
+		 * @return the number of operations done (e.g. the number of words looked up)
+		 * @throws Exception if the operation fails
+		 */
+		long run() throws Exception;
+
+		/**
+		 * Releases what the preparation acquired, called after the iteration (not measured).
+		 * @throws IOException if the resources cannot be released
+		 */
+		@Override
+		default void close() throws IOException {}
+	}
+
+	/** Prepares an iteration of a benchmark, the time it takes is not measured */
+	@FunctionalInterface
+	private interface Setup {
+		/**
+		 * @return the operation to measure
+		 * @throws Exception if the preparation fails
+		 */
+		Operation prepare() throws Exception;
+	}
+
+	private final int warmup, iterations;
+	/** The minimal duration of an iteration of the fast benchmarks in nanoseconds */
+	private final long mintime;
+	private final Pattern only;
+	private final Path corpora;
+	private final List<Result> results = new ArrayList<>();
+	/** The lowercase words of the embedded dictionary that consist of letters only */
+	private final List<String> words;
+
+	private Benchmarks(boolean quick, Pattern only, Path corpora) throws IOException {
+		this.warmup = quick? 1 : 3;
+		this.iterations = quick? 2 : 5;
+		this.mintime = quick? 200_000_000L : 1_000_000_000L;
+		this.only = only;
+		this.corpora = corpora;
+		this.words = loadWords();
+	}
+
+	/**
+	 * @return the lowercase words of the embedded dictionary that consist of letters only
+	 * @throws IOException if the dictionary cannot be read
+	 */
+	private static List<String> loadWords() throws IOException {
+		var res = new ArrayList<String>();
+		var in = Benchmarks.class.getResourceAsStream("/resources/american-english-huge");
+		if(in == null) throw new IOException("Embedded dictionary not found, is src on the classpath?");
+		try(var reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))){
+			String w;
+			while((w = reader.readLine()) != null) {
+				if(w.chars().allMatch(c -> c >= 'a' && c <= 'z')) res.add(w);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Changes a word into a likely misspelling: two neighbouring letters are swapped,
+	 * a letter is dropped or a letter is replaced.
+	 * @param word the word to change
+	 * @param rnd the source of randomness
+	 * @return the misspelled word
+	 */
+	private static String misspell(String word, Random rnd) {
+		if(word.length() < 3) return word + "q";
+		int i = rnd.nextInt(word.length() -1);
+		char[] c = word.toCharArray();
+		switch(rnd.nextInt(3)) {
+		case 0 -> {
+			char tmp = c[i]; c[i] = c[i +1]; c[i +1] = tmp;
+		}
+		case 1 -> {
+			return word.substring(0, i) + word.substring(i +1);
+		}
+		default -> c[i] = (char) ('a' + (c[i] - 'a' + 1 + rnd.nextInt(25)) % 26);
+		}
+		return new String(c);
+	}
+
+	/**
+	 * Parses sizes like 512k, 16m or 1g.
+	 * @param s the size
+	 * @return the size in bytes
+	 */
+	private static long parseSize(String s) {
+		s = s.trim().toLowerCase(Locale.ROOT);
+		long unit = switch(s.charAt(s.length() -1)) {
+		case 'k' -> 1L << 10;
+		case 'm' -> 1L << 20;
+		case 'g' -> 1L << 30;
+		default -> 1;
+		};
+		if(unit > 1) s = s.substring(0, s.length() -1);
+		return Long.parseLong(s) * unit;
+	}
+
+	/**
+	 * Writes a corpus of text with about one mistake in 50 words, unless it already exists.
+	 * @param size the size of the corpus in bytes
+	 * @return the location of the corpus
+	 * @throws IOException if the corpus cannot be written
+	 */
+	private Path corpus(long size) throws IOException {
+		Path file = corpora.resolve("corpus-" + size + ".txt");
+		if(Files.exists(file) && Files.size(file) >= size) return file;
+		var rnd = new Random(seed);
+		var line = new StringBuilder();
+		long written = 0;
+		try(BufferedWriter out = Files.newBufferedWriter(file)){
+			while(written < size) {
+				line.setLength(0);
+				for(int i = 0, n = 6 + rnd.nextInt(10); i < n; i++) {
+					String w = words.get(rnd.nextInt(words.size()));
+					if(rnd.nextInt(50) == 0) w = misspell(w, rnd);
+					if(i == 0) w = Character.toUpperCase(w.charAt(0)) + w.substring(1);
+					if(i > 0) line.append(' ');
+					line.append(w);
+				}
+				line.append(".\n");
+				out.append(line);
+				written += line.length();
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Writes a corpus in which every line contains the same mistake once, unless it already exists.
+	 * @param count the number of lines and occurrences of the mistake
+	 * @return the location of the corpus
+	 * @throws IOException if the corpus cannot be written
+	 */
+	private Path repeatedCorpus(int count) throws IOException {
+		Path file = corpora.resolve("repeated-" + count + ".txt");
+		if(Files.exists(file)) return file;
+		var rnd = new Random(seed);
+		try(BufferedWriter out = Files.newBufferedWriter(file)){
+			for(int i = 0; i < count; i++) {
+				out.append(words.get(rnd.nextInt(words.size()))).append(" recieve ")
+				.append(words.get(rnd.nextInt(words.size()))).append('\n');
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Deletes the files of TypoTattler in the (temporary) cache and state directories whose
+	 * names start with prefix.
+	 * @param prefix the start of the names of the files to delete
+	 * @throws IOException if a file cannot be deleted
+	 */
+	private static void clear(String prefix) throws IOException {
+		for(Path dir: List.of(FileHelpers.getCacheDir("TypoTattler"), FileHelpers.getStateDir("TypoTattler"))) {
+			if(!Files.isDirectory(dir)) continue;
+			try(Stream<Path> files = Files.list(dir)){
+				for(Path p: (Iterable<Path>) files::iterator) {
+					if(p.getFileName().toString().startsWith(prefix)) Files.delete(p);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param name the name of a benchmark
+	 * @return true if the benchmark was selected with --only
+	 */
+	private boolean selected(String name) {
+		return only == null || only.matcher(name).find();
+	}
+
+	/**
+	 * Runs a benchmark that measures a single, long running call per iteration.
+	 * @param name the name of the benchmark
+	 * @param params the parameters of the benchmark
+	 * @param unit the unit of the score, "ms/op" or "s/op"
+	 * @param setup prepares each iteration
+	 * @throws Exception if the benchmark fails
+	 */
+	private void single(String name, String params, String unit, Setup setup) throws Exception {
+		if(!selected(name)) return;
+		final double scale = unit.startsWith("s")? 1e9 : 1e6;
+		double[] scores = new double[iterations];
+		for(int i = -warmup; i < iterations; i++) {
+			long time;
+			try(Operation op = setup.prepare()){
+				long start = System.nanoTime();
+				sink += op.run();
+				time = System.nanoTime() - start;
+			}
+			if(i >= 0) scores[i] = time / scale;
+		}
+		report(name, params, scores, unit);
+	}
+
+	/**
+	 * Runs a benchmark that measures a fast call. Each iteration repeats the call for at
+	 * least {@link #mintime} and the score is the time per operation.
+	 * @param name the name of the benchmark
+	 * @param params the parameters of the benchmark
+	 * @param unit the unit of the score, "ns/op" or "us/op"
+	 * @param op the operation, which may do several operations at once
+	 * @throws Exception if the benchmark fails
+	 */
+	private void repeated(String name, String params, String unit, Operation op) throws Exception {
+		if(!selected(name)) return;
+		final double scale = unit.startsWith("us")? 1e3 : 1;
+		double[] scores = new double[iterations];
+		for(int i = -warmup; i < iterations; i++) {
+			long ops = 0, time, start = System.nanoTime();
+			do {
+				ops += op.run();
+				time = System.nanoTime() - start;
+			} while(time < mintime);
+			if(i >= 0) scores[i] = time / scale / ops;
+		}
+		report(name, params, scores, unit);
+	}
+
+	/**
+	 * Stores and prints the result of a benchmark.
+	 * @param name the name of the benchmark
+	 * @param params the parameters of the benchmark
+	 * @param scores the score of each measured iteration
+	 * @param unit the unit of the scores
+	 */
+	private void report(String name, String params, double[] scores, String unit) {
+		double mean = 0, var = 0;
+		for(double s: scores) mean += s;
+		mean /= scores.length;
+		for(double s: scores) var += (s - mean) * (s - mean);
+		double error = (scores.length > 1)? Math.sqrt(var / (scores.length -1)) : 0;
+		var r = new Result(name, params, scores.length, mean, error, unit);
+		results.add(r);
+		System.out.printf(Locale.ROOT, "%-24s %-28s %3d %14.3f +- %10.3f %s%n",
+				r.name(), r.params(), r.count(), r.score(), r.error(), r.unit());
+	}
+
+	/**
+	 * Loading the embedded dictionary: parsed into a {@link main.WordTable}, parsed and
+	 * built into a {@link main.Dafsa} (no snapshot) and mapped from an existing snapshot.
+	 * @throws Exception if the benchmark fails
+	 */
+	private void checkerLoad() throws Exception {
+		single("checker.load", "storage=TABLE", "ms/op", () -> () -> {
+			try(var c = new Checker(Engine.BKTREE, Storage.TABLE)){
+				return c.isMistake("house")? 0 : 1;
+			}
+		});
+		single("checker.load", "storage=DAFSA,cold", "ms/op", () -> {
+			clear("dict-");
+			return () -> {
+				try(var c = new Checker(Engine.BKTREE, Storage.DAFSA)){
+					return c.isMistake("house")? 0 : 1;
+				}
+			};
+		});
+		new BaseDictionary(Engine.BKTREE, Storage.DAFSA); //writes the snapshot
+		single("checker.load", "storage=DAFSA,snapshot", "ms/op", () -> () -> {
+			try(var c = new Checker(Engine.BKTREE, Storage.DAFSA)){
+				return c.isMistake("house")? 0 : 1;
+			}
+		});
+	}
+
+	/**
+	 * Looking up a mix of words (in mixed case) and misspellings in the text they occur in.
+	 * @throws Exception if the benchmark fails
+	 */
+	private void isMistake() throws Exception {
+		var rnd = new Random(seed);
+		var text = new StringBuilder();
+		int n = 4096;
+		int[] bounds = new int[n +1];
+		for(int i = 0; i < n; i++) {
+			String w = words.get(rnd.nextInt(words.size()));
+			if(rnd.nextInt(4) == 0) w = misspell(w, rnd);
+			if(rnd.nextInt(8) == 0) w = Character.toUpperCase(w.charAt(0)) + w.substring(1);
+			bounds[i] = text.length();
+			text.append(w);
+		}
+		bounds[n] = text.length();
+		final String s = text.toString();
+		for(Storage storage: Storage.values()) {
+			var dict = new BaseDictionary(Engine.BKTREE, storage);
+			try(var c = new Checker(dict)){
+				repeated("checker.isMistake", "storage=" + storage, "ns/op", () -> {
+					long mistakes = 0;
+					for(int i = 0; i < n; i++) {
+						if(c.isMistake(s, bounds[i], bounds[i +1])) mistakes++;
+					}
+					sink += mistakes;
+					return n;
+				});
+			}
+		}
+	}
+
+	/**
+	 * Guessing suggestions for misspellings of different lengths with every engine.
+	 * @throws Exception if the benchmark fails
+	 */
+	private void guess() throws Exception {
+		if(!selected("checker.guess")) return;
+		for(Engine engine: Engine.values()) {
+			try(var c = new Checker(new BaseDictionary(engine, Storage.DAFSA))){
+				for(int len: guesslengths) {
+					var rnd = new Random(seed + len);
+					var queries = new ArrayList<String>();
+					for(String w: words) {
+						if(w.length() == len) queries.add(w);
+					}
+					var sample = new String[64];
+					for(int i = 0; i < sample.length; i++) {
+						sample[i] = misspell(queries.get(rnd.nextInt(queries.size())), rnd);
+					}
+					repeated("checker.guess", "engine=" + engine + ",len=" + len, "us/op", () -> {
+						for(String q: sample) sink += c.guess(q).length;
+						return sample.length;
+					});
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creating a {@link main.Parser} for corpora of different sizes, without the results of
+	 * an earlier search (cold) and with all lines unchanged since the last search.
+	 * @param sizes the sizes of the corpora
+	 * @throws Exception if the benchmark fails
+	 */
+	private void parser(List<Long> sizes) throws Exception {
+		if(!selected("parser")) return;
+		try(var c = new Checker()){
+			for(long size: sizes) {
+				Path file = corpus(size);
+				String params = "size=" + (size >> 20) + "m";
+				String unit = (size >= 256L << 20)? "s/op" : "ms/op";
+				single("parser.cold", params, unit, () -> {
+					clear("lines-");
+					clear("session-");
+					return () -> {
+						try(var p = new Parser(file, c)){
+							return p.stats().mistakes();
+						}
+					};
+				});
+				single("parser.unchanged", params, unit, () -> {
+					clear("session-");
+					return () -> {
+						try(var p = new Parser(file, c)){
+							return p.stats().mistakes();
+						}
+					};
+				});
+				clear("lines-");
+			}
+		}
+	}
+
+	/**
+	 * Replacing all occurrences of a mistake that occurs in every line.
+	 * @throws Exception if the benchmark fails
+	 */
+	private void replaceAll() throws Exception {
+		if(!selected("parser.replaceAll")) return;
+		try(var c = new Checker()){
+			for(int count: repetitions) {
+				Path file = repeatedCorpus(count);
+				single("parser.replaceAll", "count=" + count, "ms/op", () -> {
+					clear("lines-");
+					clear("session-");
+					Parser p = new Parser(file, c);
+					Mistake first = null;
+					while(first == null && p.hasNext()) {
+						Mistake m = p.next();
+						if(m.wrongword.equals("recieve")) first = m;
+					}
+					final Mistake m = first;
+					return new Operation() {
+						@Override
+						public long run() {
+							var failed = p.replaceAll(m, "receive");
+							return (failed == null)? count : -failed.size();
+						}
+
+						@Override
+						public void close() throws IOException {
+							p.close();
+						}
+					};
+				});
+			}
+		}
+	}
+
+	/**
+	 * Writes the results as CSV.
+	 * @param file the location of the CSV file
+	 * @throws IOException if the file cannot be written
+	 */
+	private void writeCsv(Path file) throws IOException {
+		try(var out = new PrintStream(Files.newOutputStream(file), false, StandardCharsets.UTF_8)){
+			out.println(csvheader);
+			for(Result r: results) {
+				out.printf(Locale.ROOT, "%s,\"%s\",%d,%.6f,%.6f,%s%n",
+						r.name(), r.params(), r.count(), r.score(), r.error(), r.unit());
+			}
+		}
+	}
+
+	/**
+	 * Deletes a directory and everything below it.
+	 * @param dir the directory to delete
+	 * @throws IOException if a file cannot be deleted
+	 */
+	private static void delete(Path dir) throws IOException {
+		if(!Files.exists(dir)) return;
+		try(Stream<Path> files = Files.walk(dir)){
+			for(Path p: (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+		}
+	}
+
+	/**
+	 * Runs a group of benchmarks in this JVM.
+	 * @param group the name of the group (see {@link #groups})
+	 * @param sizes the sizes of the corpora
+	 * @throws Exception if a benchmark fails
+	 */
+	private void run(String group, List<Long> sizes) throws Exception {
+		switch(group) {
+		case "checker.load" -> checkerLoad();
+		case "checker.isMistake" -> isMistake();
+		case "checker.guess" -> guess();
+		case "parser" -> parser(sizes);
+		case "parser.replaceAll" -> replaceAll();
+		default -> throw new IllegalArgumentException("Unknown group: " + group);
+		}
+	}
+
+	/**
+	 * Runs every group of benchmarks in fresh JVMs, so the code compiled and the garbage
+	 * left by one group cannot influence the next. The JVMs are started with the options
+	 * and the class path of this JVM and share the generated corpora.
+	 * @param args the options passed to this JVM
+	 * @param forks the number of JVMs per group
+	 * @param corpora the directory holding the corpora, null for a temporary one
+	 * @param csv the location of the CSV file, null if none is written
+	 * @return 0 if all JVMs succeeded, otherwise the exit code of the last one failing
+	 * @throws IOException if a JVM cannot be started or the CSV file cannot be written
+	 * @throws InterruptedException if interrupted while waiting for a JVM
+	 */
+	private static int fork(String[] args, int forks, Path corpora, Path csv) throws IOException, InterruptedException {
+		Path dir = Files.createTempDirectory("typotattler-forks");
+		try {
+			if(corpora == null) corpora = dir.resolve("corpora");
+			Files.createDirectories(corpora);
+			var rows = new ArrayList<String>();
+			int status = 0;
+			printHeader();
+			for(String group: groups) {
+				for(int f = 0; f < forks; f++) {
+					Path part = dir.resolve(group + "-" + f + ".csv");
+					var cmd = new ArrayList<String>();
+					cmd.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+					cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+					cmd.addAll(List.of("-cp", System.getProperty("java.class.path"), Benchmarks.class.getName()));
+					cmd.addAll(List.of(args));
+					//Later options override earlier ones
+					cmd.addAll(List.of("--forks", "0", "--group", group, "--corpora", corpora.toString(),
+							"--csv", part.toString()));
+					int exit = new ProcessBuilder(cmd).inheritIO().start().waitFor();
+					if(exit != 0) status = exit;
+					if(Files.exists(part)) {
+						List<String> lines = Files.readAllLines(part, StandardCharsets.UTF_8);
+						rows.addAll(lines.subList(1, lines.size()));
+					}
+				}
+			}
+			if(csv != null) {
+				rows.add(0, csvheader);
+				Files.write(csv, rows, StandardCharsets.UTF_8);
+			}
+			return status;
+		} finally {
+			delete(dir);
+		}
+	}
+
+	/**
+	 * Prints the header of the table of results.
+	 */
+	private static void printHeader() {
+		System.out.printf("%-24s %-28s %3s %14s    %10s %s%n", "Benchmark", "Params", "Cnt", "Score", "Error", "Units");
+	}
+
+	/**
+	 * Runs the benchmarks.
+	 * @param args the options, see the class documentation
+	 * @throws Exception if a benchmark fails
+	 */
+	public static void main(String[] args) throws Exception {
+		boolean quick = false;
+		Pattern only = null;
+		String sizes = defaultsizes, group = null;
+		Path csv = null, corpora = null;
+		int forks = 1;
+		for(int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+			case "--quick" -> quick = true;
+			case "--only" -> only = Pattern.compile(args[++i]);
+			case "--sizes" -> sizes = args[++i];
+			case "--corpora" -> corpora = Path.of(args[++i]);
+			case "--csv" -> csv = Path.of(args[++i]);
+			case "--forks" -> forks = Integer.parseInt(args[++i]);
+			case "--group" -> group = args[++i];
+			default -> {
+				System.err.println("Unknown option: " + args[i]);
+				System.exit(2);
+			}
+			}
+		}
+		for(String env: List.of("XDG_CACHE_HOME", "XDG_STATE_HOME", "XDG_DATA_HOME")) {
+			if(System.getenv(env) != null) {
+				System.err.println(env + " is set, please unset it so the benchmarks cannot touch your caches.");
+				System.exit(2);
+			}
+		}
+		if(forks > 0) System.exit(fork(args, forks, corpora, csv));
+
+		Path home = Files.createTempDirectory("typotattler-bench");
+		System.setProperty("user.home", home.toString());
+		try {
+			if(corpora == null) corpora = home.resolve("corpora");
+			Files.createDirectories(corpora);
+			var sizelist = new ArrayList<Long>();
+			for(String s: sizes.split(",")) sizelist.add(parseSize(s));
+
+			var b = new Benchmarks(quick, only, corpora);
+			if(group == null) printHeader();
+			for(String g: groups) {
+				if(group == null || group.equals(g)) b.run(g, sizelist);
+			}
+			if(csv != null) b.writeCsv(csv);
+		} finally {
+			delete(home);
+		}
+	}
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import main.Checker;
+import main.Checker.Engine;
+
+/**
+ * Checks that a {@link main.Checker} shared by several threads neither loses words nor
+ * fails while they are added. Writer threads add words not in the dictionary, either for
+ * the session only (like ignoring a mistake) or to the user dictionary as well (like
+ * adding it). At the same time reader threads check words with
+ * {@link Checker#isMistake(String)}, {@link Checker#guess(String)} and
+ * {@link Checker#suggest(String)}:
+ * <ul>
+ * <li>a word a writer finished adding is never a mistake and is its own best suggestion,</li>
+ * <li>a word of the dictionary is never a mistake,</li>
+ * <li>a word nobody adds is always a mistake.</li>
+ * </ul>
+ * Afterwards every added word has to be known to the checker and every word added to the
+ * user dictionary to a new checker. Unlike {@link bench.Benchmarks} nothing is measured:
+ * the run fails with exit code 1 if any check fails or any thread throws. It runs in a
+ * temporary home directory, so the user dictionary of the user is not touched.
+ * <p>
+ * Usage: {@code java -cp CLASSES:src bench.CheckerStress [--readers N] [--writers N]
+ * [--words N] [--engine NAME]}
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+public final class CheckerStress {
+
+	/** The seed for the generated words, set to {@value} */
+	private static final long seed = 42;
+	/** The number of failures reported before the rest are only counted, set to {@value} */
+	private static final int maxreported = 20;
+	/** Readers guess suggestions in every {@value}th round */
+	private static final int guessevery = 16;
+
+	private final Checker checker;
+	/** The words the writers add, words[w] belonging to writer w */
+	private final String[][] words;
+	/** published.get(w) is the number of words of writer w that were added completely */
+	private final AtomicIntegerArray published;
+	/** Words of the dictionary */
+	private final String[] known;
+	/** Words nobody adds */
+	private final String[] unknown;
+	private final ConcurrentLinkedQueue<String> failures = new ConcurrentLinkedQueue<>();
+	private final AtomicLong failed = new AtomicLong(), checks = new AtomicLong(), guesses = new AtomicLong();
+
+	private CheckerStress(Checker checker, int writers, int count) {
+		this.checker = checker;
+		var random = new Random(seed);
+		var distinct = new LinkedHashSet<String>();
+		while(distinct.size() < count + count / 10) {
+			String word = randomWord(random);
+			if(checker.isMistake(word)) distinct.add(word);
+		}
+		var generated = new ArrayList<String>(distinct);
+		words = new String[writers][];
+		int per = count / writers;
+		for(int w = 0; w < writers; w++) {
+			words[w] = generated.subList(w * per, (w +1) * per).toArray(String[]::new);
+		}
+		unknown = generated.subList(writers * per, generated.size()).toArray(String[]::new);
+		published = new AtomicIntegerArray(writers);
+		known = new String[] {"receive", "because", "language", "separate", "definitely", "the", "house"};
+		for(String word: known) {
+			if(checker.isMistake(word)) throw new IllegalStateException("Not in the dictionary: " + word);
+		}
+		checker.suggest(unknown[0]); //builds the index and loads the cache before the threads race
+	}
+
+	/**
+	 * @param random the source of randomness
+	 * @return a word of 6 to 10 lowercase letters
+	 */
+	private static String randomWord(Random random) {
+		char[] word = new char[6 + random.nextInt(5)];
+		for(int i = 0; i < word.length; i++) word[i] = (char) ('a' + random.nextInt(26));
+		return new String(word);
+	}
+
+	/**
+	 * Records a failed check.
+	 * @param message what failed
+	 */
+	private void fail(String message) {
+		if(failed.incrementAndGet() <= maxreported) failures.add(message);
+	}
+
+	/**
+	 * Adds the words of a writer. Every second word is added to the user dictionary as well.
+	 * After each word the writer checks that it sees the word itself.
+	 * @param w the number of the writer
+	 */
+	private void write(int w) {
+		String[] mine = words[w];
+		for(int i = 0; i < mine.length; i++) {
+			if(i % 2 == 0 && !checker.addToUsrDict(mine[i])) fail("Could not add to the user dictionary: " + mine[i]);
+			checker.add(mine[i]);
+			if(checker.isMistake(mine[i])) fail("Writer " + w + " does not see its word: " + mine[i]);
+			published.set(w, i +1);
+			Thread.yield(); //lets the readers see the overlays in between
+		}
+	}
+
+	/**
+	 * Checks random words until the writers are done. Only every {@value #guessevery}th
+	 * round guesses suggestions, since that takes much longer than looking words up. These
+	 * rounds guess for recently added words and ask for suggestions for the word a writer
+	 * adds next, so a cache entry missing that word would be found.
+	 * @param r the number of the reader, used as seed
+	 * @param done set once all writers are done
+	 */
+	private void read(int r, AtomicBoolean done) {
+		var random = new Random(seed + r);
+		long n = 0, g = 0;
+		while(!done.get()) {
+			final boolean guessing = n % guessevery == 0;
+			int w = random.nextInt(words.length);
+			int count = published.get(w);
+			if(count > 0) {
+				String word = words[w][random.nextInt(count)];
+				if(checker.isMistake(word)) fail("Published word is a mistake: " + word);
+			}
+			if(guessing) {
+				//Suggestions cached for the next word before it is added must not survive its addition
+				if(count < words[w].length) checker.suggest(words[w][count]);
+				if(count > 0) {
+					String word = words[w][count -1 - random.nextInt(Math.min(count, 16))];
+					String[] guesses = (g++ % 2 == 0)? checker.guess(word) : checker.suggest(word);
+					if(guesses.length == 0 || !guesses[0].equals(word)) {
+						fail("Published word is not its own best suggestion: " + word + " -> " + Arrays.toString(guesses));
+					}
+				}
+			}
+			String known = this.known[random.nextInt(this.known.length)];
+			if(checker.isMistake(known)) fail("Dictionary word is a mistake: " + known);
+			String unknown = this.unknown[random.nextInt(this.unknown.length)];
+			if(!checker.isMistake(unknown)) fail("Word nobody added is not a mistake: " + unknown);
+			n++;
+		}
+		checks.addAndGet(n);
+		guesses.addAndGet(g);
+	}
+
+	/**
+	 * Runs the readers and writers and checks the result.
+	 * @param readers the number of reader threads
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	private void run(int readers) throws InterruptedException {
+		var done = new AtomicBoolean(false);
+		var start = new CountDownLatch(1);
+		var threads = new ArrayList<Thread>();
+		var writing = new ArrayList<Thread>();
+		for(int w = 0; w < words.length; w++) {
+			final int writer = w;
+			writing.add(thread("writer-" + w, start, () -> write(writer)));
+		}
+		for(int r = 0; r < readers; r++) {
+			final int reader = r;
+			threads.add(thread("reader-" + r, start, () -> read(reader, done)));
+		}
+		threads.addAll(writing);
+		for(Thread t: threads) t.start();
+		start.countDown();
+		for(Thread t: writing) t.join();
+		done.set(true);
+		for(Thread t: threads) t.join();
+
+		for(String[] mine: words) {
+			for(String word: mine) {
+				if(checker.isMistake(word)) fail("Added word is lost: " + word);
+			}
+		}
+	}
+
+	/**
+	 * Creates a thread that waits for start before running body and records what it throws.
+	 * @param name the name of the thread
+	 * @param start released once all threads are started
+	 * @param body the work of the thread
+	 * @return the thread, not started yet
+	 */
+	private Thread thread(String name, CountDownLatch start, Runnable body) {
+		return new Thread(() -> {
+			try {
+				start.await();
+				body.run();
+			} catch(Throwable t) {
+				fail(name + " threw " + t);
+			}
+		}, name);
+	}
+
+	/**
+	 * Checks that a new checker finds every word added to the user dictionary.
+	 * @throws IOException if the new checker cannot be created
+	 */
+	private void reload() throws IOException {
+		try(var fresh = new Checker(checker.dictionary().type())){
+			for(String[] mine: words) {
+				for(int i = 0; i < mine.length; i += 2) {
+					if(fresh.isMistake(mine[i])) fail("Word missing from the user dictionary: " + mine[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes a directory with all its content.
+	 * @param dir the directory
+	 * @throws IOException if a file cannot be deleted
+	 */
+	private static void delete(Path dir) throws IOException {
+		if(!Files.exists(dir)) return;
+		try(Stream<Path> files = Files.walk(dir)){
+			for(Path p: (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(p);
+		}
+	}
+
+	/**
+	 * Runs the stress test.
+	 * @param args the options, see the class documentation
+	 * @throws Exception if the checker cannot be created
+	 */
+	public static void main(String[] args) throws Exception {
+		int readers = Math.max(4, Runtime.getRuntime().availableProcessors()), writers = 4, count = 2000;
+		Engine engine = Engine.SYMSPELL; //the fastest guesses, so the readers guess while the writers add
+		for(int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+			case "--readers" -> readers = Integer.parseInt(args[++i]);
+			case "--writers" -> writers = Integer.parseInt(args[++i]);
+			case "--words" -> count = Integer.parseInt(args[++i]);
+			case "--engine" -> engine = Engine.valueOf(args[++i].toUpperCase());
+			default -> {
+				System.err.println("Unknown option: " + args[i]);
+				System.exit(2);
+			}
+			}
+		}
+		for(String env: List.of("XDG_CACHE_HOME", "XDG_STATE_HOME", "XDG_DATA_HOME")) {
+			if(System.getenv(env) != null) {
+				System.err.println(env + " is set, please unset it so the test cannot touch your dictionaries.");
+				System.exit(2);
+			}
+		}
+
+		Path home = Files.createTempDirectory("typotattler-stress");
+		System.setProperty("user.home", home.toString());
+		CheckerStress stress;
+		try {
+			try(var checker = new Checker(engine)){
+				stress = new CheckerStress(checker, writers, count);
+				stress.run(readers);
+			}
+			stress.reload();
+		} finally {
+			delete(home);
+		}
+
+		System.out.printf("%d readers, %d writers, %d words added, %d rounds, %d guesses: %d failures%n",
+				readers, writers, writers * (count / writers), stress.checks.get(), stress.guesses.get(), stress.failed.get());
+		stress.failures.forEach(System.out::println);
+		if(stress.failed.get() > 0) System.exit(1);
+	}
+}
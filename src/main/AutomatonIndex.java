@@ -0,0 +1,132 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.util.ArrayList;
+import java.util.List;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Finds similar words by running a Levenshtein automaton for the query in lockstep with
+ * a {@link main.Dafsa} of the dictionary. The automaton is simulated by one row of the
+ * Damerau-Levenshtein-matrix per consumed character: the row holds the distance between
+ * every prefix of the query and the path taken through the dictionary so far. As soon as
+ * every value in a row exceeds the radius, no word below the current state can match and
+ * the whole subtree is skipped. Keeping the two previous rows allows transpositions, so
+ * the results equal those of {@link main.EditDistance}.
+ * <p>
+ * Words added after the index has been created are kept in a list and compared one by one.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ * @see <a href="http://stevehanov.ca/blog/?id=114">
+ * S. Hanov: Fast and Easy Levenshtein distance using a Trie</a>
+ */
+class AutomatonIndex implements SuggestionEngine {
+
+	/** The dictionary that is traversed */
+	private final Dafsa dafsa;
+
+	/** Words added after the index has been created */
+	private final ArrayList<String> extra = new ArrayList<>();
+
+	/**
+	 * Constructor.
+	 * @param dafsa the dictionary to traverse
+	 */
+	AutomatonIndex(Dafsa dafsa) {
+		this.dafsa = requireNonNull(dafsa);
+	}
+
+	@Override
+	public void add(String word) {
+		extra.add(requireNonNull(word));
+	}
+
+	/** The state of a single search */
+	private final class Search {
+		final String query;
+		final int radius;
+		final List<Match> matches = new ArrayList<>();
+		/** The characters consumed so far */
+		final char[] path;
+		/** rows[d] is the row of the matrix after consuming d characters */
+		final int[][] rows;
+
+		Search(String query, int radius) {
+			this.query = query;
+			this.radius = radius;
+			path = new char[query.length() +1];
+			rows = new int[query.length() +2][query.length() +1];
+			for(int i = 0; i <= query.length(); i++) rows[0][i] = i;
+		}
+
+		/**
+		 * Visits all states reachable from state, whose words may be within the radius.
+		 * @param state the current state of the dictionary
+		 * @param depth the number of characters consumed to reach state
+		 */
+		void visit(int state, int depth) {
+			final int m = query.length();
+			if(dafsa.isFinal(state) && depth >= m -1 && rows[depth][m] <= radius) {
+				matches.add(new Match(new String(path, 0, depth), rows[depth][m]));
+			}
+			//Only words whose length differs by at most one from the query are of interest
+			if(depth > m) return;
+
+			final int[] prev = rows[depth], cur = rows[depth +1];
+			final int[] prev2 = (depth > 0)? rows[depth -1] : null;
+			for(int e = dafsa.firstEdge(state); e < dafsa.endEdge(state); e++) {
+				final char c = dafsa.label(e);
+				cur[0] = depth +1;
+				int min = cur[0];
+				for(int i = 1; i <= m; i++) {
+					final char qc = query.charAt(i -1);
+					int v = Math.min(Math.min(prev[i] +1, cur[i -1] +1), prev[i -1] + ((qc == c)? 0 : 1));
+					if(prev2 != null && i > 1 && qc == path[depth -1] && query.charAt(i -2) == c) {
+						v = Math.min(v, prev2[i -2] +1);
+					}
+					cur[i] = v;
+					min = Math.min(min, v);
+				}
+				if(min > radius) continue;
+				path[depth] = c;
+				visit(dafsa.target(e), depth +1);
+			}
+		}
+	}
+
+	/**
+	 * Collects all words with a distance of at most radius to query, whose length differs
+	 * by at most one from the length of query.
+	 */
+	@Override
+	public List<Match> search(String query, int radius, int limit) {
+		requireNonNull(query);
+		var search = new Search(query, radius);
+		search.visit(0, 0);
+
+		var metric = new EditDistance(query, radius);
+		for(String word: extra) {
+			int dist = metric.distance(word);
+			if(dist <= radius && Math.abs(word.length() - query.length()) <= 1) {
+				search.matches.add(new Match(word, dist));
+			}
+		}
+		return search.matches;
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A BK-tree (Burkhard-Keller-tree) over the words of a dictionary. Every child of a node
+ * is stored under its edit-distance to that node, which allows a search to skip all
+ * subtrees that cannot contain words within the requested distance of the query.
+ * <p>
+ * Skipping subtrees relies on the triangle inequality, which the
+ * optimal-string-alignment-distance of {@link EditDistance#distance(CharSequence)} does
+ * not satisfy. The tree is therefore built and searched with the unrestricted
+ * Damerau-Levenshtein distance ({@link EditDistance#damerau(CharSequence)}), a metric that
+ * is never larger, while the words found are ranked by the
+ * optimal-string-alignment-distance like in the other engines. So no word within the
+ * radius is missed.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ * @see <a href="https://en.wikipedia.org/wiki/BK-tree">BK-tree</a>
+ */
+class BKTree implements SuggestionEngine {
+
+	/** A word in the tree together with its children, indexed by their distance to the word */
+	private static final class Node {
+		final String word;
+		Node[] children = null;
+
+		Node(String word) {
+			this.word = word;
+		}
+
+		/**
+		 * @param dist the distance of the child to this node
+		 * @return the child stored under dist or null if there is none
+		 */
+		Node child(int dist) {
+			return (children == null || dist >= children.length)? null : children[dist];
+		}
+
+		/**
+		 * Stores node as the child with the distance dist to this node.
+		 * @param dist the distance of node to this node
+		 * @param node the new child
+		 */
+		void setChild(int dist, Node node) {
+			if(children == null) {
+				children = new Node[dist +1];
+			} else if(dist >= children.length) {
+				var tmp = new Node[dist +1];
+				System.arraycopy(children, 0, tmp, 0, children.length);
+				children = tmp;
+			}
+			children[dist] = node;
+		}
+	}
+
+	/** The first word inserted into the tree */
+	private Node root = null;
+
+	/** The number of words in the tree */
+	private int size = 0;
+
+	/**
+	 * Inserts word into the tree, unless it already contains the word.
+	 * @param word the word to insert
+	 */
+	@Override
+	public void add(String word) {
+		requireNonNull(word);
+		if(root == null) {
+			root = new Node(word);
+			size++;
+			return;
+		}
+
+		var metric = new EditDistance(word);
+		Node node = root;
+		while(true) {
+			int dist = metric.damerau(node.word);
+			if(dist == 0) return;
+			Node child = node.child(dist);
+			if(child == null) {
+				node.setChild(dist, new Node(word));
+				size++;
+				return;
+			}
+			node = child;
+		}
+	}
+
+	/**
+	 * Collects all words with a distance of at most radius to query. Since the unrestricted
+	 * distance to a node is never larger than the optimal-string-alignment-distance and at
+	 * least half of it, it is only computed if it could rule out some of the children the
+	 * latter would visit.
+	 */
+	@Override
+	public List<Match> search(String query, int radius, int limit) {
+		requireNonNull(query);
+		var matches = new ArrayList<Match>();
+		if(root == null) return matches;
+
+		var metric = new EditDistance(query);
+		var stack = new ArrayDeque<Node>();
+		stack.push(root);
+		while(!stack.isEmpty()) {
+			Node node = stack.pop();
+			final int osa = metric.distance(node.word);
+			if(osa <= radius) matches.add(new Match(node.word, osa));
+			if(node.children == null) continue;
+
+			int dist = osa;
+			final int lower = Math.max((osa +1) / 2, Math.abs(query.length() - node.word.length()));
+			for(int i = Math.max(lower - radius, 1); i < Math.min(osa - radius, node.children.length); i++) {
+				if(node.children[i] != null) {
+					dist = metric.damerau(node.word, node.children.length -1 + radius);
+					break;
+				}
+			}
+			//Triangle inequality: only children in [dist - radius, dist + radius] can match
+			int end = Math.min(dist + radius, node.children.length -1);
+			for(int i = Math.max(dist - radius, 1); i <= end; i++) {
+				if(node.children[i] != null) stack.push(node.children[i]);
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * @return the number of words in the tree
+	 */
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,297 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import main.Checker.Engine;
+import main.Checker.Storage;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The words of a dictionary file together with the index used to find similar words. A
+ * dictionary never changes after it was loaded, so one instance can be shared by any number
+ * of {@link main.Checker}s (and threads), which add the words of the user (e.g. the user
+ * dictionary or ignored words) on top of it.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+public final class BaseDictionary {
+
+	/** Guess for the number of elements will contain, set to {@value}. */
+	private static final int initialdictlen = 150000;
+	/** Contains all the 'known' words from the dictionary */
+	private final WordList words;
+	/** The kind of index used for {@link #engine} */
+	private final Engine type;
+	/**
+	 * Index over {@link #words} used by {@link #search(String, int, int)}. Created by its
+	 * first call.
+	 */
+	private volatile SuggestionEngine engine = null;
+	/** Identifies the version of the dictionary {@link #words} was read from */
+	private final String key;
+	/** The location of the file the suggestions for this dictionary are cached in */
+	private final Path cachefile;
+
+	/**
+	 * Merges a file into a set of words.
+	 * @param in a reader for the file containing the words to be merged into words
+	 * @param words receives the lowercase words
+	 * @throws IOException if the file cannot be read
+	 */
+	private static void file2dict(Reader in, Consumer<String> words) throws IOException {
+		try (BufferedReader reader = new BufferedReader(in)){
+			String word = null;
+			while((word = reader.readLine())!= null) {
+				words.accept(word.toLowerCase());
+			}
+		} catch (IOException e) {
+			throw new FileNotFoundException("Cannot read dictionary file");
+		}
+	}
+
+	/**
+	 * Wrapper for {@link #file2dict(Reader, Consumer)}.
+	 * @param file contains the words to be merged into words.
+	 * @param words receives the lowercase words
+	 * @throws IOException if the file cannot be read
+	 */
+	static void file2dict(File file, Consumer<String> words) throws IOException {
+		FileReader fr;
+		try {
+			fr = new FileReader(file);
+		} catch (IOException e) {
+			throw new FileNotFoundException("Invalid dictionary file: " + file.getPath().toString());
+		}
+		file2dict(fr, words);
+	}
+
+	/**
+	 * Creates the index used by {@link #search(String, int, int)}.
+	 * @param type the kind of index to create
+	 * @param words the words the index is created for
+	 * @return an index containing words
+	 */
+	private static SuggestionEngine createEngine(Engine type, WordList words) {
+		SuggestionEngine engine = switch(requireNonNull(type)) {
+		case BKTREE -> new BKTree();
+		case SYMSPELL -> new SymSpellIndex();
+		case SCAN -> new ScanIndex();
+		case AUTOMATON -> {
+			if(words instanceof Dafsa dafsa) yield new AutomatonIndex(dafsa);
+			var tmp = new HashSet<String>(words.size());
+			words.forEach(tmp::add);
+			yield new AutomatonIndex(new Dafsa(tmp));
+		}
+		};
+		if(type != Engine.AUTOMATON) words.forEach(engine::add);
+		engine.seal();
+		return engine;
+	}
+
+	/**
+	 * Stores the loaded words in the requested data structure. A {@link main.Dafsa} is also
+	 * written to a snapshot file, so the next start can skip parsing the dictionary.
+	 * @param storage the kind of data structure
+	 * @param words the words of the dictionary
+	 * @param snapshot the location of the snapshot file
+	 * @param key identifies the version of the dictionary the words were read from
+	 * @return the words in the requested data structure
+	 */
+	private static WordList createWordList(Storage storage, HashSet<String> words, Path snapshot, String key) {
+		return switch(requireNonNull(storage)) {
+		case TABLE -> {
+			var table = new WordTable(words.size());
+			words.forEach(table::add);
+			yield table;
+		}
+		case DAFSA -> {
+			var dafsa = new Dafsa(words);
+			try {
+				dafsa.write(snapshot, key);
+			} catch(IOException e) {
+				//Without a snapshot the dictionary is simply parsed again on the next start
+			}
+			yield dafsa;
+		}
+		};
+	}
+
+	/**
+	 * Returns the location of a file derived from a dictionary (e.g. its snapshot) in the
+	 * directory from {@link main.FileHelpers#getCacheDir(String)}.
+	 * @param source the absolute path or the URL of the dictionary
+	 * @param extension the extension of the file
+	 * @return the location of the file
+	 */
+	private static Path cachePath(String source, String extension) {
+		UUID id = UUID.nameUUIDFromBytes(source.getBytes(StandardCharsets.UTF_8));
+		return FileHelpers.getCacheDir("TypoTattler").resolve("dict-" + id + "." + extension);
+	}
+
+	/**
+	 * Creates the key identifying the version of a dictionary. A snapshot is only used
+	 * if it was built from a dictionary with the same key.
+	 * @param source the absolute path or the URL of the dictionary
+	 * @param size the size of the dictionary in bytes
+	 * @param mtime the time the dictionary was last modified
+	 * @return the key for the dictionary
+	 */
+	static String snapshotKey(String source, long size, long mtime) {
+		return String.join("|", source, Long.toString(size), Long.toString(mtime));
+	}
+
+	/**
+	 * Constructor that loads a dictionary file. If the dictionary is stored as
+	 * {@link Storage#DAFSA} and a current snapshot of it exists, the snapshot is
+	 * memory-mapped instead of parsing the dictionary.
+	 * @param dictpath the path to the dictionary
+	 * @param type the index used to find similar words in {@link #search(String, int, int)}
+	 * @param storage the data structure the dictionary is stored in
+	 * @throws IOException if there is a problem with reading dictpath
+	 */
+	public BaseDictionary(Path dictpath, Engine type, Storage storage) throws IOException {
+		requireNonNull(dictpath);
+		this.type = requireNonNull(type);
+
+		File dictfile = dictpath.toFile();
+		String source = dictfile.getAbsolutePath();
+		Path snapshot = cachePath(source, "dafsa");
+		key = snapshotKey(source, dictfile.length(), dictfile.lastModified());
+		cachefile = cachePath(source, "suggestions");
+		WordList words = (storage == Storage.DAFSA)? Dafsa.map(snapshot, key) : null;
+		if(words == null) {
+			var tmp = new HashSet<String>(initialdictlen);
+			file2dict(dictfile, tmp::add);
+			words = createWordList(storage, tmp, snapshot, key);
+		}
+		this.words = words;
+	}
+
+	/**
+	 * Constructor that loads the dictionary embedded into the project. If the dictionary is
+	 * stored as {@link Storage#DAFSA} and a current snapshot of it exists, the snapshot is
+	 * memory-mapped instead of parsing the dictionary.
+	 * @param type the index used to find similar words in {@link #search(String, int, int)}
+	 * @param storage the data structure the dictionary is stored in
+	 * @throws IOException if there is a problem with accessing the embedded dictionary
+	 * @see {@link resources.american-english-huge}
+	 */
+	public BaseDictionary(Engine type, Storage storage) throws IOException {
+		this.type = requireNonNull(type);
+		String embeddedDict = "/resources/american-english-huge";
+		URL url = getClass().getResource(embeddedDict);
+		if(url == null) throw new FileNotFoundException("Embedded dictionary not found: " + embeddedDict);
+		URLConnection connection = url.openConnection();
+		String source = url.toString();
+		Path snapshot = cachePath(source, "dafsa");
+		key = snapshotKey(source, connection.getContentLengthLong(), connection.getLastModified());
+		cachefile = cachePath(source, "suggestions");
+		WordList words = (storage == Storage.DAFSA)? Dafsa.map(snapshot, key) : null;
+		if(words == null) {
+			var tmp = new HashSet<String>(initialdictlen);
+			file2dict(new InputStreamReader(connection.getInputStream()), tmp::add);
+			words = createWordList(storage, tmp, snapshot, key);
+		} else {
+			connection.getInputStream().close(); //opened to determine the length
+		}
+		this.words = words;
+	}
+
+	/**
+	 * @param word a lowercase word
+	 * @return true if the dictionary contains word
+	 */
+	public boolean contains(CharSequence word) {
+		return words.contains(word);
+	}
+
+	/**
+	 * Checks if the dictionary contains the word in [start, end) of text. The word is
+	 * case-folded while it is looked up.
+	 * @param text the text containing the word
+	 * @param start the position of the first character of the word
+	 * @param end the position after the last character of the word
+	 * @return true if the dictionary contains the word
+	 */
+	public boolean contains(CharSequence text, int start, int end) {
+		return words.contains(text, start, end);
+	}
+
+	/**
+	 * @return the number of words in the dictionary
+	 */
+	public int size() {
+		return words.size();
+	}
+
+	/**
+	 * Collects the words of the dictionary with a distance of at most radius to query (see
+	 * {@link SuggestionEngine#search(String, int, int)}). The first call builds the index.
+	 * @param query the lowercase word to search similar words for
+	 * @param radius the maximum distance of a match to query
+	 * @param limit the number of matches the caller is interested in
+	 * @return the matches in no particular order
+	 */
+	List<SuggestionEngine.Match> search(String query, int radius, int limit) {
+		SuggestionEngine engine = this.engine;
+		if(engine == null) {
+			synchronized(this) {
+				engine = this.engine;
+				if(engine == null) this.engine = engine = createEngine(type, words);
+			}
+		}
+		return engine.search(query, radius, limit);
+	}
+
+	/**
+	 * @return the kind of index used by {@link #search(String, int, int)}
+	 */
+	public Engine type() {
+		return type;
+	}
+
+	/**
+	 * @return the key identifying the version of the dictionary file the words were read from
+	 */
+	String key() {
+		return key;
+	}
+
+	/**
+	 * @return the location of the file the suggestions for this dictionary are cached in
+	 */
+	Path cachefile() {
+		return cachefile;
+	}
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Checks many files without user interaction and reports every mistake as a line of JSON
+ * (JSON Lines), e.g.
+ * <pre>
+ * {"file":"docs/intro.md","line":3,"column":17,"word":"teh","suggestions":["the","ten"]}
+ * </pre>
+ * Lines and columns start at 1, the column counts characters (UTF-16 code units).
+ * Suggestions are only included if requested. All files share one {@link main.Checker}
+ * and are checked concurrently on a fixed pool of threads. The report of a file is
+ * written as a whole, and the reports appear in the order the files were given in.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+class Batch {
+
+	/** The characters that turn an argument into a glob pattern */
+	private static final String globchars = "*?[{";
+
+	/** The checker shared by all files */
+	private final Checker checker;
+	/** True if every mistake should be reported with suggestions */
+	private final boolean suggest;
+	/** Receives the reports */
+	private final PrintStream out;
+
+	/**
+	 * Constructor.
+	 * @param checker the checker shared by all files
+	 * @param suggest true if every mistake should be reported with suggestions
+	 * @param out receives the reports
+	 */
+	Batch(Checker checker, boolean suggest, PrintStream out) {
+		this.checker = requireNonNull(checker);
+		this.suggest = suggest;
+		this.out = requireNonNull(out);
+	}
+
+	/**
+	 * Expands the arguments into the files they refer to. A regular file is taken as it is,
+	 * a directory is replaced by all regular files below it and an argument containing one
+	 * of {@value #globchars} that is not an existing path is treated as a glob pattern
+	 * (see {@link java.nio.file.FileSystem#getPathMatcher(String)}). The pattern is
+	 * matched against all files below the longest leading part of it without any pattern
+	 * characters.
+	 * @param args the files, directories and glob patterns
+	 * @return the files in the order of the arguments, each directory and pattern sorted
+	 * @throws IOException if a directory cannot be read
+	 * @throws NoSuchFileException if an argument is neither an existing path nor a pattern
+	 */
+	static List<Path> expand(List<String> args) throws IOException {
+		var files = new LinkedHashSet<Path>();
+		for(String arg: args) {
+			arg = FileHelpers.expandUser(arg);
+			Path path = Paths.get(arg);
+			if(Files.isRegularFile(path)) {
+				files.add(path);
+			} else if(Files.isDirectory(path)) {
+				walk(path, p -> true, files);
+			} else if(arg.chars().anyMatch(c -> globchars.indexOf(c) >= 0)) {
+				int wildcard = 0;
+				while(globchars.indexOf(arg.charAt(wildcard)) < 0) wildcard++;
+				int sep = arg.lastIndexOf('/', wildcard);
+				Path base = (sep < 0)? Paths.get("") : Paths.get(arg.substring(0, sep +1));
+				PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + arg);
+				if(Files.isDirectory(base)) walk(base, matcher::matches, files);
+			} else {
+				throw new NoSuchFileException(arg);
+			}
+		}
+		return new ArrayList<>(files);
+	}
+
+	/**
+	 * Collects the regular files below dir accepted by matcher in sorted order.
+	 * @param dir the directory to search
+	 * @param matcher decides which files are collected
+	 * @param files receives the files
+	 * @throws IOException if the directory cannot be read
+	 */
+	private static void walk(Path dir, PathMatcher matcher, LinkedHashSet<Path> files) throws IOException {
+		//Paths.get("") has to be stripped, else "*.txt" would be matched against "./a.txt"
+		boolean relative = dir.toString().isEmpty();
+		try(Stream<Path> stream = Files.walk(relative? Paths.get(".") : dir)){
+			stream.filter(Files::isRegularFile)
+			.map(p -> relative? Paths.get(".").relativize(p) : p)
+			.filter(matcher::matches)
+			.sorted()
+			.forEachOrdered(files::add);
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Checks all files and writes their reports. Files that cannot be read are reported on
+	 * standard error.
+	 * @param files the files to check
+	 * @param threads the number of threads checking files concurrently
+	 * @return 0 if no mistakes were found, 1 if there were mistakes, 2 if a file could not be read
+	 * @throws InterruptedException if the thread is interrupted while waiting for the reports
+	 */
+	int run(List<Path> files, int threads) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			var reports = new ArrayList<Future<String>>(files.size());
+			for(Path file: files) reports.add(pool.submit(() -> check(file)));
+
+			int status = 0;
+			for(int i = 0; i < files.size(); i++) {
+				try {
+					String report = reports.get(i).get();
+					if(!report.isEmpty()) status = Math.max(status, 1);
+					out.print(report);
+				} catch(ExecutionException e) {
+					System.err.println("Error: Cannot check '" + files.get(i) + "': " + reason(e.getCause()));
+					status = 2;
+				}
+			}
+			out.flush();
+			return status;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Describes why a file could not be checked.
+	 * @param e the exception thrown by {@link #check(Path, Path)}
+	 * @return a short description of the problem
+	 */
+	static String reason(Throwable e) {
+		if(e instanceof CharacterCodingException) return "not a UTF-8 textfile";
+		if(e instanceof NoSuchFileException) return "no such file";
+		return e.getMessage();
+	}
+
+	/**
+	 * Wrapper for {@link #check(Path, Path)} for a file relative to the working directory.
+	 * @param file the file to check
+	 * @return one line of JSON for every mistake in the file
+	 * @throws IOException if the file cannot be read
+	 */
+	String check(Path file) throws IOException {
+		return check(file, Paths.get(""));
+	}
+
+	/**
+	 * Checks a file line by line and collects its report. Only the current line is kept in
+	 * memory.
+	 * @param file the file to check, as it should appear in the report
+	 * @param dir the directory a relative file is resolved against
+	 * @return one line of JSON for every mistake in the file
+	 * @throws IOException if the file cannot be read
+	 */
+	String check(Path file, Path dir) throws IOException {
+		var report = new StringBuilder();
+		var tokenizer = new Tokenizer();
+		String name = escape(file.toString());
+		try(BufferedReader reader = Files.newBufferedReader(dir.resolve(file), StandardCharsets.UTF_8)){
+			String line;
+			int lineno = 0;
+			while((line = reader.readLine()) != null) {
+				lineno++;
+				tokenizer.reset(line);
+				while(tokenizer.next()) {
+					final int start = tokenizer.start(), end = tokenizer.end();
+					if(!checker.isMistake(line, start, end)) continue;
+					String word = line.substring(start, end);
+					report.append("{\"file\":\"").append(name)
+					.append("\",\"line\":").append(lineno)
+					.append(",\"column\":").append(start +1)
+					.append(",\"word\":\"").append(escape(word)).append('"');
+					if(suggest) {
+						report.append(",\"suggestions\":[");
+						String[] guesses = checker.suggest(word);
+						for(int i = 0; i < guesses.length; i++) {
+							if(i > 0) report.append(',');
+							report.append('"').append(escape(guesses[i])).append('"');
+						}
+						report.append(']');
+					}
+					report.append('}').append(System.lineSeparator());
+				}
+			}
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Escapes a String so it can be placed between the quotes of a JSON string.
+	 * @param s the String to escape
+	 * @return the escaped String
+	 */
+	static String escape(String s) {
+		var res = new StringBuilder(s.length() +8);
+		for(int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch(c) {
+			case '"': res.append("\\\""); break;
+			case '\\': res.append("\\\\"); break;
+			case '\n': res.append("\\n"); break;
+			case '\r': res.append("\\r"); break;
+			case '\t': res.append("\\t"); break;
+			default:
+				if(c < 0x20) {
+					res.append(String.format("\\u%04x", (int) c));
+				} else {
+					res.append(c);
+				}
+			}
+		}
+		return res.toString();
+	}
+}
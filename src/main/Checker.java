@@ -16,94 +16,150 @@
  */
 
 package main;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.nio.file.*;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import static java.util.Objects.requireNonNull;
 
 /**
  * Class providing methods to tell if a word is a misspelling according to the underlying
  * dictionary and to which words from the dictionary that misspelling is similar.
+ * <p>
+ * A checker is a lightweight layer over a shared, immutable {@link main.BaseDictionary}:
+ * it adds the words of the user dictionary, of optional project dictionaries and the words
+ * added during the session (e.g. ignored spellings) without touching the base dictionary,
+ * so several checkers can use the same base dictionary without seeing each other's words.
+ * <p>
+ * A checker is thread-safe. Lookups ({@link #isMistake(CharSequence, int, int)}) and
+ * guesses ({@link #guess(String)}) take no lock; methods changing the checker are
+ * serialized and publish their changes atomically, so a lookup sees a word either
+ * completely added or not at all.
  * @author Jan Philipp Berg
  * @vers 0.2
  *
  */
-public class Checker {
+public class Checker implements AutoCloseable {
 
-	/** Guess for the number of elements will contain, set to {@value}. */
-	private static final int initialdictlen = 150000;
-	/** Contains all the 'known' words */
-	private HashSet<String> dict = new HashSet<String>(initialdictlen);
-	/** User entries into the dictionary */
-	private File usrdict = null;
-	/** Length of the longest word in the dictionary. Used to create {@link #dlMatrix}. */
-	private int maxwordlength = -1;
-	/** The matrix used to calculate the edit-distance between two words*/
-	private int[][] dlMatrix;
+	/** The available indexes {@link #guess(String)} can use to find similar words */
+	public enum Engine {
+		/** A {@link main.BKTree}: small, but visits a large part of the tree for each guess */
+		BKTREE,
+		/** A {@link main.SymSpellIndex}: needs much more memory, but guesses are a lot faster */
+		SYMSPELL,
+		/** A {@link main.ScanIndex}: compares every word of a similar length, but in parallel */
+		SCAN,
+		/** 
+		 * An {@link main.AutomatonIndex}: traverses the dictionary as a trie and skips every
+		 * prefix that cannot lead to a match. Needs no additional memory with {@link Storage#DAFSA}
+		 */
+		AUTOMATON
+	}
+
+	/** The available data structures a {@link main.BaseDictionary} can be stored in */
+	public enum Storage {
+		/** A {@link main.WordTable}: quick to build, but needs more memory */
+		TABLE,
+		/** A {@link main.Dafsa}: a minimized automaton that needs only a fraction of the memory */
+		DAFSA
+	}
 
+	/** Contains all the 'known' words from the dictionary, shared with other checkers */
+	private final BaseDictionary dict;
 	/**
-	 * Checks if word is the longest word in the dictionary.
-	 * @param word to check
-	 * @return true if word is the longest encountered yet, false otherwise
+	 * The words a checker adds to its {@link main.BaseDictionary}. An overlay never changes
+	 * once it is published: adding words creates a new overlay, which replaces the old one
+	 * (copy-on-write). Readers therefore need no lock, they simply use the overlay that was
+	 * current when they started. Words are added rarely and the overlay is small compared to
+	 * the base dictionary, so copying it is cheap.
+	 * @param table the words for lookups
+	 * @param words the same words for {@link #search(String, int)}
 	 */
-	private boolean isMax(String word) {
-		if(maxwordlength < word.length()) {
-			maxwordlength = word.length();
-			return true;
+	private record Overlay(WordTable table, String[] words) {
+
+		/** The overlay without words */
+		static final Overlay EMPTY = new Overlay(new WordTable(), new String[0]);
+
+		/**
+		 * Creates a new overlay containing the words of this overlay and additions.
+		 * @param additions the lowercase words to add
+		 * @return the new overlay
+		 */
+		Overlay with(Collection<String> additions) {
+			var table = new WordTable(words.length + additions.size());
+			var words = new ArrayList<String>(this.words.length + additions.size());
+			for(String w: this.words) {
+				table.add(w);
+				words.add(w);
+			}
+			for(String w: additions) {
+				if(table.add(w)) words.add(w);
+			}
+			return new Overlay(table, words.toArray(String[]::new));
 		}
-		return false;
-	}	
 
-	/**
-	 * Merges a file into {@link #dict} and updates {@link #maxwordlength}.
-	 * @param in a reader for the file containing the words to be merged into {@link #dict}
-	 * @throws IOException if the file cannot be read
-	 */
-	private void file2dict(Reader in) throws IOException {
-		try (BufferedReader reader = new BufferedReader(in)){
-			String word = null;
-			while((word = reader.readLine())!= null) {
-				this.dict.add(word.toLowerCase());
-				isMax(word);
+		/**
+		 * Compares query with every word of the overlay.
+		 * @param query the lowercase word to search similar words for
+		 * @param radius the maximum distance of a match to query
+		 * @return the words with a distance of at most radius to query
+		 */
+		List<SuggestionEngine.Match> search(String query, int radius) {
+			var metric = new EditDistance(query, radius);
+			var matches = new ArrayList<SuggestionEngine.Match>();
+			for(String w: words) {
+				int dist = metric.distance(w);
+				if(dist <= radius) matches.add(new SuggestionEngine.Match(w, dist));
 			}
-			dlMatrix = new int[maxwordlength][maxwordlength];
-		} catch (IOException e) {
-			throw new FileNotFoundException("Cannot read dictionary file");
+			return matches;
 		}
 	}
 
 	/**
-	 * Wrapper for {@link #file2dict(Reader)}.
-	 * @param file contains the words to be merged into {@link #dict}.
-	 * @throws IOException if the file cannot be read
+	 * Contains the words from the user dictionary, the project dictionaries and the words
+	 * added via {@link #add(String)}. Only replaced while holding the lock of the checker.
 	 */
-	private void file2dict(File file) throws IOException {
-		FileReader fr;
-		try {
-			fr = new FileReader(file);
-		} catch (IOException e) {
-			throw new FileNotFoundException("Invalid dictionary file: " + file.getPath().toString());
-		}
-		file2dict(fr);
-	}
+	private volatile Overlay overlay = Overlay.EMPTY;
+	/** User entries into the dictionary */
+	private UserDictionary usrdict = null;
+	/** Identifies the versions of the project dictionaries */
+	private final String projectkey;
+	/** The maximum edit-distance of a word returned by {@link #guess(String)}, set to {@value} */
+	private static final int maxguessdist = 3;
+	/** The maximum number of words returned by {@link #guess(String)}, set to {@value} */
+	private static final int maxguesses = 10;
+	/** The maximum number of misspellings in {@link #cache}, set to {@value} */
+	private static final int maxcached = 10000;
+	/** The suggestions from previous calls of {@link #suggest(String)}. Loaded by its first call. */
+	private SuggestionCache cache = null;
+	/** The words added via {@link #add(String)}, that are not in {@link #usrdict} */
+	private final HashSet<String> sessionwords = new HashSet<>();
+
+	/**
+	 * Suggestions being computed by {@link #suggest(String)}.
+	 * @param overlay the overlay the suggestions are computed with
+	 * @param result completed with the suggestions
+	 */
+	private record Pending(Overlay overlay, CompletableFuture<String[]> result) {}
+
+	/** The suggestions currently being computed, mapped from the lowercase misspelling */
+	private final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<>();
 
 	/**
 	 * Responsible for initializing {@link #usrdict}. The method will create the file, if it
-	 * does not exists or merge the contained words into {@link #dict} if it does.
+	 * does not exists or merge the contained words into words if it does.
+	 * @param words receives the words of the user dictionary
 	 * @throws IOException Either if the file cannot be created or cannot be read
 	 */
-	private void loadUserDict() throws IOException {
+	private void loadUserDict(Consumer<String> words) throws IOException {
 		Path dir = FileHelpers.getDataDir("TypoTattler");
-		usrdict = dir.resolve("usrdict.txt").toFile();
+		Path file = dir.resolve("usrdict.txt");
 
 		try {
 			Files.createDirectories(dir);
@@ -112,49 +168,134 @@ public class Checker {
 		}
 
 		try {
-			if(!usrdict.createNewFile()) {
-				file2dict(new FileReader(usrdict));
-			}
+			usrdict = UserDictionary.open(file, words);
 		} catch (IOException e) {
-			throw new IOException("Cannot create user dictionary: " + usrdict);
+			throw new IOException("Cannot create user dictionary: " + file);
 		}
 	}
 
 	/**
-	 * Constructor that initializes the class from a provided dictionary. 
+	 * Constructor that creates a checker on top of a (possibly shared) dictionary.
+	 * @param dict the dictionary
+	 * @param projectdicts additional dictionaries (one word per line) only this checker uses
+	 * @throws IOException if there is a problem with reading a project dictionary or with creating/accessing the user dictionary
+	 */
+	public Checker(BaseDictionary dict, Path... projectdicts) throws IOException {
+		this.dict = requireNonNull(dict);
+		var keys = new ArrayList<String>();
+		var words = new ArrayList<String>();
+		Consumer<String> receiver = w -> {
+			if(!dict.contains(w)) words.add(w);
+		};
+		for(Path p: projectdicts) {
+			var file = p.toFile();
+			BaseDictionary.file2dict(file, receiver);
+			keys.add(BaseDictionary.snapshotKey(file.getAbsolutePath(), file.length(), file.lastModified()));
+		}
+		projectkey = String.join("|", keys);
+		loadUserDict(receiver);
+		overlay = Overlay.EMPTY.with(words);
+	}
+
+	/**
+	 * Constructor that initializes the class from a provided dictionary. If the dictionary
+	 * is stored as {@link Storage#DAFSA} and a current snapshot of it exists, the snapshot
+	 * is memory-mapped instead of parsing the dictionary.
+	 * @param dictpath the path to the dictionary
+	 * @param type the index used to find similar words in {@link #guess(String)}
+	 * @param storage the data structure the dictionary is stored in
+	 * @throws IOException if there is a problem with reading dictpath or with creating/accessing the user dictionary
+	 */
+	public Checker(Path dictpath, Engine type, Storage storage) throws IOException {
+		this(new BaseDictionary(dictpath, type, storage));
+	}
+
+	/**
+	 * Constructor that initializes the class from a provided dictionary stored in a
+	 * {@link main.Dafsa}. 
+	 * @param dictpath the path to the dictionary
+	 * @param type the index used to find similar words in {@link #guess(String)}
+	 * @throws IOException if there is a problem with reading dictpath or with creating/accessing the user dictionary
+	 */
+	public Checker(Path dictpath, Engine type) throws IOException {
+		this(dictpath, type, Storage.DAFSA);
+	}
+
+	/**
+	 * Constructor that initializes the class from a provided dictionary stored in a
+	 * {@link main.Dafsa} and uses a {@link main.BKTree} to find similar words.
 	 * @param dictpath the path to the dictionary
 	 * @throws IOException if there is a problem with reading dictpath or with creating/accessing the user dictionary
 	 */
 	public Checker(Path dictpath) throws IOException {
-		requireNonNull(dictpath);
+		this(dictpath, Engine.BKTREE);
+	}
 
-		File dictfile = dictpath.toFile();
-		file2dict(dictfile);
-		loadUserDict();
+	/**
+	 * Constructor that initializes the class from the dictionary embedded into the project,
+	 * stores it in a {@link main.Dafsa} and uses a {@link main.BKTree} to find similar words.
+	 * @throws IOException if there is a problem with accessing the embedded dictionary or with creating/accessing the user dictionary
+	 * @see {@link resources.american-english-huge}
+	 */
+	public Checker() throws IOException{
+		this(Engine.BKTREE);
+	}
+
+	/**
+	 * Constructor that initializes the class from the dictionary embedded into the project
+	 * and stores it in a {@link main.Dafsa}.
+	 * @param type the index used to find similar words in {@link #guess(String)}
+	 * @throws IOException if there is a problem with accessing the embedded dictionary or with creating/accessing the user dictionary
+	 * @see {@link resources.american-english-huge}
+	 */
+	public Checker(Engine type) throws IOException{
+		this(type, Storage.DAFSA);
 	}
 
 	/**
 	 * Constructor that initializes the class from the dictionary embedded into the project.
+	 * If the dictionary is stored as {@link Storage#DAFSA} and a current snapshot of it
+	 * exists, the snapshot is memory-mapped instead of parsing the dictionary.
+	 * @param type the index used to find similar words in {@link #guess(String)}
+	 * @param storage the data structure the dictionary is stored in
 	 * @throws IOException if there is a problem with accessing the embedded dictionary or with creating/accessing the user dictionary
 	 * @see {@link resources.american-english-huge}
 	 */
-	public Checker() throws IOException{
-		String embeddedDict = "/resources/american-english-huge";
-		var tmp = getClass().getResourceAsStream(embeddedDict);
-		if(tmp == null) throw new FileNotFoundException("Embedded dictionary not found: " + embeddedDict);
-		var isr = new InputStreamReader(tmp);
-		file2dict(isr);
-		loadUserDict();
+	public Checker(Engine type, Storage storage) throws IOException{
+		this(new BaseDictionary(type, storage));
 	}
 
 	/**
-	 * Checks if a String is a mistake according to the Strings saved in {@link #dict}.
+	 * @return the dictionary this checker adds its words to
+	 */
+	public BaseDictionary dictionary() {
+		return dict;
+	}
+
+	/**
+	 * Checks if a String is a mistake according to the Strings saved in {@link #dict}
+	 * and {@link #overlay}.
 	 * @param word the String to check
-	 * @return true if {@link #dict} contains word, false otherwise
+	 * @return true if neither {@link #dict} nor {@link #overlay} contain word, false otherwise
 	 */
 	public boolean isMistake(String word) {
 		requireNonNull(word);
-		return !this.dict.contains(word.toLowerCase());
+		return isMistake(word, 0, word.length());
+	}
+
+	/**
+	 * Checks if the word in [start, end) of text is a mistake according to the Strings
+	 * saved in {@link #dict} and {@link #overlay}. The word is case-folded while it is looked
+	 * up, so the check does not allocate. Needs no lock.
+	 * @param text the text containing the word
+	 * @param start the position of the first character of the word
+	 * @param end the position after the last character of the word
+	 * @return true if neither {@link #dict} nor {@link #overlay} contain the word, false otherwise
+	 */
+	public boolean isMistake(CharSequence text, int start, int end) {
+		requireNonNull(text);
+		Objects.checkFromToIndex(start, end, text.length());
+		return !this.dict.contains(text, start, end) && !this.overlay.table().contains(text, start, end);
 	}
 
 	/**
@@ -176,104 +317,140 @@ public class Checker {
 	}
 
 	/**
-	 * Appends word to {@link #usrdict}
+	 * Adds word to {@link #usrdict}. The word is appended to the file right away (it is only
+	 * forced to the disk by {@link #close()}), so it is not lost if the program is killed
+	 * before closing the checker. Calling this again after a failure retries the write.
 	 * @param word the word to be added to the user dictionary
-	 * @return true if the word was appended, false if {@link #usrdict} was not writeable
+	 * @return true if the word was added, false if {@link #usrdict} was not writeable
 	 */
-	public boolean addToUsrDict(String word) {
+	public synchronized boolean addToUsrDict(String word) {
 		requireNonNull(word);
-		try(BufferedWriter bw = new BufferedWriter(new FileWriter(usrdict, true))){
-			bw.append(word.toLowerCase() + System.lineSeparator());
+		try {
+			usrdict.add(word);
+			usrdict.flush();
 		} catch(IOException e) {
 			return false;
 		}
+		sessionwords.remove(word.toLowerCase());
 		return true;
 	}
 
 	/**
-	 * Adds word to {@link #dict}. Resizes {@link #dlMatrix} if necessary.
+	 * Adds word to this checker (but not to the shared {@link #dict}) by publishing a new
+	 * {@link #overlay}. The cached suggestions it could be part of are dropped.
 	 * @param word the word to be added to the dictionary
 	 */
-	public void add(String word) {
+	public synchronized void add(String word) {
 		requireNonNull(word);
-		this.dict.add(word.toLowerCase());
-		if(this.isMax(word)) {
-			dlMatrix = new int[maxwordlength][maxwordlength];
-		}
+		word = word.toLowerCase();
+		if(dict.contains(word) || overlay.table().contains(word)) return;
+		overlay = overlay.with(List.of(word));
+		if(cache != null) cache.invalidate(word, maxguessdist);
+		sessionwords.add(word);
 	}
 
 	/**
-	 * Provides a list of Strings from {@link #dict} that are most similar to s.
+	 * Provides a list of Strings from {@link #dict} and {@link #overlay} that are most similar
+	 * to s. Instead of comparing s with every word in the dictionary only the candidates
+	 * provided by the index of {@link #dict} are considered, the few words of the overlay are
+	 * compared one by one. Needs no lock.
 	 * @param s the String that will be checked for similarities with the words from {@link #dict}
-	 * @return a list of Strings similar to s (to a maximum of 10), sorted by ther
+	 * @return a list of Strings similar to s (to a maximum of 10), sorted by their distance to s
 	 */
 	public String[] guess(String s){
 		requireNonNull(s);
-		s.toLowerCase();
-		record StrComp(String string, int dldist) {};
-		Comparator<StrComp> comp = Comparator.comparingInt(StrComp::dldist);
-		var guesses = dict.stream()
-				.filter(word -> s.length() +2 > word.length() && s.length() -2 < word.length())
-				.map(word -> new StrComp(word, DLdist(word, s)))
-				.filter(sc -> sc.dldist < 4)
-				.sorted(comp)
-				.limit(10)
-				.map(word -> word.string)
+		final String word = s.toLowerCase();
+		List<SuggestionEngine.Match> matches = new ArrayList<>(dict.search(word, maxguessdist, maxguesses));
+		matches.addAll(overlay.search(word, maxguessdist));
+		var guesses = matches.stream()
+				.filter(m -> m.dist() <= maxguessdist)
+				.filter(m -> word.length() +2 > m.word().length() && word.length() -2 < m.word().length())
+				.sorted(SuggestionEngine.order)
+				.limit(maxguesses)
+				.map(SuggestionEngine.Match::word)
 				.toArray(String[]::new);
 		return guesses;
 	}
 
+
 	/**
-	 * Wrapper for {@link #DLdist(char[], char[])}
-	 * @param s1 the first word
-	 * @param s2 the second word
-	 * @return the Damerau-Levenshtein distance between s1, s2
+	 * Provides the suggestions for a misspelling like {@link #guess(String)}, but looks them
+	 * up in a cache that is kept between sessions first. If another thread (e.g. the
+	 * {@link main.Prefetcher}) is already computing the suggestions for the same misspelling
+	 * with the current words, its result is awaited instead of computing them a second time.
+	 * @param s the misspelling
+	 * @return a list of Strings similar to s (to a maximum of 10), sorted by their distance to s
 	 */
-	private int DLdist(String s1, String s2) {
-		return DLdist(s1.toCharArray(), s2.toCharArray());
-	}
+	public String[] suggest(String s) {
+		requireNonNull(s);
+		final String word = s.toLowerCase();
+		SuggestionCache cache;
+		synchronized(this) {
+			if(this.cache == null) this.cache = new SuggestionCache(dict.cachefile(), cacheKey(), maxcached);
+			cache = this.cache;
+		}
+		String[] guesses = cache.get(word);
+		if(guesses != null) return guesses.clone();
 
-	//https://en.wikipedia.org/wiki/Damerau%E2%80%93Levenshtein_distance
+		final var mine = new Pending(overlay, new CompletableFuture<>());
+		Pending running = pending.putIfAbsent(word, mine);
+		//Suggestions started before a word was added could miss it, so they are not awaited
+		if(running != null && running.overlay() == mine.overlay()) return running.result().join().clone();
+		try {
+			guesses = guess(word);
+			//A word added in the meantime could be a better guess, so the guesses are not cached then
+			synchronized(this) {
+				if(overlay == mine.overlay()) cache.put(word, guesses);
+			}
+			mine.result().complete(guesses);
+		} catch(RuntimeException | Error e) {
+			mine.result().completeExceptionally(e);
+			throw e;
+		} finally {
+			if(running == null) pending.remove(word, mine);
+		}
+		return guesses.clone();
+	}
 
 	/**
-	 * Computes the Damerau-Levenshtein distance between the words c1 and c2 and shows how
-	 * closely related the two words are (e.g. how many single-character-editing steps are
-	 * needed to turn c1 into c2 and vice versa).
-	 * The algorithm is a translation from the corresponding Wikipedia-article.
-	 * @param c1
-	 * @param c2
-	 * @return
-	 * @see <a href="https://en.wikipedia.org/wiki/Damerau%E2%80%93Levenshtein_distance">
-	 * Damerau–Levenshtein distance</a>
+	 * Creates a key identifying the current versions of the dictionary, the project
+	 * dictionaries and the user dictionary. Results computed with a checker are only valid
+	 * for checkers with the same key.
+	 * @return the key for the current state of the dictionaries
 	 */
-	private int DLdist(char[] c1, char[] c2) {
-
-		final int height = c1.length +1;
-		final int width = c2.length +1;
-		int cost;
-
-		for(int i = 0; i < height; i++) dlMatrix[i][0] = i;
-		for(int i = 0; i < width; i++) dlMatrix[0][i] = i;
+	synchronized String fingerprint() {
+		return String.join("|", dict.key(), projectkey, usrdict.key());
+	}
 
-		for(int i = 1; i < height; i++) {
-			for(int j = 1; j < width; j++) {
-				if(c1[i -1] == c2[j -1]) {
-					cost = 0;
-				} else {
-					cost = 1;
-				}
-				dlMatrix[i][j] = Math.min(Math.min(dlMatrix[i-1][j] +1,
-						dlMatrix[i][j-1] +1),
-						dlMatrix[i-1][j-1] + cost);
+	/**
+	 * Creates the key identifying the suggestions in {@link #cache}. They depend on the
+	 * dictionaries and on the kind of index used by {@link #dict}.
+	 * @return the key for the current state of the dictionaries
+	 */
+	private String cacheKey() {
+		return fingerprint() + "|" + dict.type().name();
+	}
 
-				if(i > 1 && j > 1 && c1[i -1] == c2[j-2] && c1[i-2] == c2[j -1]) { 
-					dlMatrix[i][j] = Math.min(dlMatrix[i][j], dlMatrix[i-2][j-2] +1);
+	/**
+	 * Writes the words added to {@link #usrdict} to the disk and saves the cached suggestions,
+	 * so later sessions can reuse them. Suggestions that could contain words added only for
+	 * this session are dropped first. The cache is not essential, so failing to save it is
+	 * ignored.
+	 * @throws IOException if the words added to the user dictionary cannot be written
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			usrdict.close();
+		} finally {
+			if(cache != null) {
+				for(String word: sessionwords) cache.invalidate(word, maxguessdist);
+				try {
+					cache.save(cacheKey());
+				} catch(IOException e) {
+					//The suggestions are simply computed again in the next session
 				}
-
 			}
 		}
-		return dlMatrix[c1.length][c2.length];
-
 	}
-
 }
@@ -0,0 +1,378 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps a {@link main.Checker} loaded and answers requests over a Unix domain socket, so
+ * that short-lived clients (editor plugins, commit hooks) neither start a JVM of their own
+ * nor load the dictionary. The protocol is line-based and uses UTF-8. Every request is a
+ * single line. Every response starts with the line "OK n" followed by exactly n lines, so
+ * a client knows when the response is complete even if a line of it is empty:
+ * <pre>
+ * CHECK text        one line "column word" for every mistake in text (columns start at 1)
+ * SUGGEST word      one line for every suggestion for word
+ * CD dir            resolves the files of the following requests against dir
+ * CHECKFILE path    one line of JSON for every mistake in the file (see {@link main.Batch})
+ * SUGGESTFILE path  like CHECKFILE, but with the suggestions for every mistake
+ * PING              PONG
+ * STOP              stops the daemon
+ * </pre>
+ * A request that cannot be answered receives the single line "ERROR message" instead.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+class Daemon {
+
+	/** The socket the daemon listens on */
+	static final Path socket = FileHelpers.getRuntimeDir("TypoTattler").resolve("daemon.sock");
+
+	/** Checks the files without suggestions */
+	private final Batch files;
+	/** Checks the files with suggestions */
+	private final Batch suggestfiles;
+	/** The checker shared by all connections */
+	private final Checker checker;
+	/** The channel accepting the connections, set while {@link #serve()} runs */
+	private volatile ServerSocketChannel server = null;
+
+	/**
+	 * Constructor.
+	 * @param checker the checker shared by all connections
+	 */
+	Daemon(Checker checker) {
+		this.checker = requireNonNull(checker);
+		files = new Batch(checker, false, System.out);
+		suggestfiles = new Batch(checker, true, System.out);
+	}
+
+	/**
+	 * @return true if a daemon is listening on {@link #socket}
+	 * @throws IOException if the connection cannot be closed
+	 */
+	static boolean running() throws IOException {
+		try(Client client = Client.connect()){
+			return client != null;
+		}
+	}
+
+	/**
+	 * Listens on {@link #socket} and answers the requests of every connection on a thread of
+	 * its own until a client sends STOP. A socket file left behind by a daemon that no
+	 * longer runs is replaced.
+	 * @throws IOException if the socket cannot be created or another daemon is running
+	 */
+	void serve() throws IOException {
+		if(running()) throw new IOException("A daemon is already listening on '" + socket + "'");
+		Files.deleteIfExists(socket);
+		Files.createDirectories(socket.getParent());
+
+		ExecutorService pool = Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "TypoTattler-connection");
+			t.setDaemon(true);
+			return t;
+		});
+		try(ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX)){
+			channel.bind(UnixDomainSocketAddress.of(socket));
+			server = channel;
+			while(channel.isOpen()) {
+				SocketChannel connection;
+				try {
+					connection = channel.accept();
+				} catch(IOException e) {
+					if(!channel.isOpen()) break; //closed by STOP
+					throw e;
+				}
+				pool.execute(() -> handle(connection));
+			}
+		} finally {
+			server = null;
+			pool.shutdownNow();
+			Files.deleteIfExists(socket);
+		}
+	}
+
+	/**
+	 * Answers the requests of a connection until the client closes it.
+	 * @param connection the connection to the client
+	 */
+	private void handle(SocketChannel connection) {
+		try(connection;
+				var in = new BufferedReader(new InputStreamReader(Channels.newInputStream(connection), StandardCharsets.UTF_8));
+				Writer out = new OutputStreamWriter(Channels.newOutputStream(connection), StandardCharsets.UTF_8)){
+			Path dir = Paths.get("").toAbsolutePath();
+			String request;
+			while((request = in.readLine()) != null) {
+				int space = request.indexOf(' ');
+				String command = (space < 0)? request : request.substring(0, space);
+				String arg = (space < 0)? "" : request.substring(space +1);
+				String response;
+				try {
+					List<String> lines;
+					if(command.equals("CD")) {
+						dir = dir.resolve(arg);
+						lines = List.of();
+					} else {
+						lines = respond(command, arg, dir).lines().toList();
+					}
+					var res = new StringBuilder("OK ").append(lines.size()).append(System.lineSeparator());
+					for(String line: lines) res.append(line).append(System.lineSeparator());
+					response = res.toString();
+				} catch(IOException | IllegalArgumentException e) {
+					response = "ERROR " + Batch.reason(e) + System.lineSeparator();
+				}
+				out.write(response);
+				out.flush();
+				if(command.equals("STOP")) {
+					ServerSocketChannel channel = server;
+					if(channel != null) channel.close();
+					return;
+				}
+			}
+		} catch(IOException e) {
+			//The client is gone, there is no one left to tell
+		}
+	}
+
+	/**
+	 * Answers a single request.
+	 * @param command the first word of the request
+	 * @param arg the rest of the request
+	 * @param dir the directory relative files are resolved against
+	 * @return the lines of the response, each followed by a line separator
+	 * @throws IOException if a file cannot be checked
+	 * @throws IllegalArgumentException if the request is unknown or the path is invalid
+	 */
+	private String respond(String command, String arg, Path dir) throws IOException {
+		var res = new StringBuilder();
+		switch(command) {
+		case "CHECK":
+			var tokenizer = new Tokenizer();
+			tokenizer.reset(arg);
+			while(tokenizer.next()) {
+				final int start = tokenizer.start(), end = tokenizer.end();
+				if(checker.isMistake(arg, start, end)) {
+					res.append(start +1).append(' ').append(arg, start, end).append(System.lineSeparator());
+				}
+			}
+			return res.toString();
+		case "SUGGEST":
+			for(String guess: checker.suggest(arg)) res.append(guess).append(System.lineSeparator());
+			return res.toString();
+		case "CHECKFILE":
+			return files.check(Paths.get(arg), dir);
+		case "SUGGESTFILE":
+			return suggestfiles.check(Paths.get(arg), dir);
+		case "PING":
+			return "PONG" + System.lineSeparator();
+		case "STOP":
+			return "";
+		default:
+			throw new IllegalArgumentException("Unknown request '" + command + "'");
+		}
+	}
+
+	/**
+	 * A connection to a running daemon.
+	 */
+	static final class Client implements Closeable {
+
+		private final SocketChannel channel;
+		private final BufferedReader in;
+		private final Writer out;
+
+		private Client(SocketChannel channel) {
+			this.channel = channel;
+			in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+			out = new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Connects to the daemon listening on {@link Daemon#socket}.
+		 * @return the connection or null if no daemon is running
+		 */
+		static Client connect() {
+			if(!Files.exists(Daemon.socket)) return null;
+			try {
+				SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+				try {
+					channel.connect(UnixDomainSocketAddress.of(Daemon.socket));
+				} catch(IOException e) {
+					channel.close();
+					return null;
+				}
+				return new Client(channel);
+			} catch(IOException e) {
+				return null;
+			}
+		}
+
+		/**
+		 * Sends a request and waits for the complete response.
+		 * @param request the request (a single line)
+		 * @return the lines of the response or the single line "ERROR message"
+		 * @throws IOException if the connection to the daemon broke before the response was complete
+		 */
+		List<String> request(String request) throws IOException {
+			out.write(request);
+			out.write(System.lineSeparator());
+			out.flush();
+			String status = in.readLine();
+			if(status == null) throw new IOException("The daemon closed the connection");
+			if(status.startsWith("ERROR ")) return List.of(status);
+			int count;
+			try {
+				if(!status.startsWith("OK ")) throw new NumberFormatException();
+				count = Integer.parseInt(status.substring(3));
+			} catch(NumberFormatException e) {
+				throw new IOException("Unexpected response '" + status + "'");
+			}
+			var lines = new ArrayList<String>(count);
+			while(lines.size() < count) {
+				String line = in.readLine();
+				if(line == null) throw new IOException("The daemon closed the connection");
+				lines.add(line);
+			}
+			return lines;
+		}
+
+		/**
+		 * The result of {@link Client#check(List, boolean, int, PrintStream)}.
+		 * @param status 0 if no mistakes were found, 1 if there were mistakes, 2 if a file could not be read
+		 * @param unchecked the files whose reports are missing because the connections to the daemon broke
+		 */
+		record Outcome(int status, List<Path> unchecked) {}
+
+		/**
+		 * Lets the daemon check files and writes the reports like {@link Batch#run(List, int)}.
+		 * The files are checked concurrently over this and further connections, each report
+		 * is written once it is complete and in the order of the files. If a connection
+		 * breaks, the other connections check the remaining files; the files left when all
+		 * of them broke are returned unchecked, so they can be checked without the daemon.
+		 * @param files the files to check
+		 * @param suggest true if every mistake should be reported with suggestions
+		 * @param connections the number of connections checking files concurrently
+		 * @param out receives the reports
+		 * @return the exit status and the files that were not checked
+		 * @throws InterruptedException if the thread is interrupted while waiting for the reports
+		 */
+		Outcome check(List<Path> files, boolean suggest, int connections, PrintStream out) throws InterruptedException {
+			var clients = new ArrayList<Client>();
+			clients.add(this);
+			while(clients.size() < Math.min(connections, files.size())) {
+				Client client = connect();
+				if(client == null) break;
+				clients.add(client);
+			}
+			var reports = new ArrayList<CompletableFuture<List<String>>>(files.size());
+			for(int i = 0; i < files.size(); i++) reports.add(new CompletableFuture<>());
+			final String dir = Paths.get("").toAbsolutePath().toString();
+			final String command = suggest? "SUGGESTFILE " : "CHECKFILE ";
+			var next = new AtomicInteger();
+			var alive = new AtomicInteger(clients.size());
+
+			ExecutorService pool = Executors.newFixedThreadPool(clients.size());
+			try {
+				for(Client client: clients) {
+					pool.execute(() -> {
+						try {
+							client.request("CD " + dir);
+							for(int i; (i = next.getAndIncrement()) < files.size();) {
+								try {
+									reports.get(i).complete(client.request(command + files.get(i)));
+								} catch(IOException e) {
+									reports.get(i).completeExceptionally(e);
+									return;
+								}
+							}
+						} catch(IOException e) {
+							//The other connections check the remaining files
+						} finally {
+							if(alive.decrementAndGet() == 0) {
+								var lost = new IOException("All connections to the daemon broke");
+								for(var report: reports) report.completeExceptionally(lost);
+							}
+						}
+					});
+				}
+
+				int status = 0;
+				var unchecked = new ArrayList<Path>();
+				for(int i = 0; i < files.size(); i++) {
+					List<String> report;
+					try {
+						report = reports.get(i).get();
+					} catch(ExecutionException e) {
+						unchecked.add(files.get(i));
+						continue;
+					}
+					if(report.size() == 1 && report.get(0).startsWith("ERROR ")) {
+						System.err.println("Error: Cannot check '" + files.get(i) + "': " + report.get(0).substring(6));
+						status = 2;
+						continue;
+					}
+					if(!report.isEmpty()) status = Math.max(status, 1);
+					for(String line: report) out.println(line);
+				}
+				out.flush();
+				return new Outcome(status, unchecked);
+			} finally {
+				pool.shutdownNow();
+				for(Client client: clients) {
+					if(client == this) continue;
+					try {
+						client.close();
+					} catch(IOException e) {
+						//Nothing is sent over the connection anymore
+					}
+				}
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
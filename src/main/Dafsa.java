@@ -0,0 +1,400 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.function.Consumer;
+
+/**
+ * A {@link main.WordList} stored as a deterministic acyclic finite state automaton (DAFSA),
+ * i.e. a trie in which not only common prefixes but also common suffixes are shared.
+ * The automaton is minimized while it is built and afterwards stored in a few primitive
+ * arrays, which needs only a fraction of the heap a set of Strings would occupy.
+ * <p>
+ * The outgoing edges of a state are stored consecutively and sorted by their label, so a
+ * lookup needs a binary search per character.
+ * <p>
+ * The arrays can be written to a snapshot file with {@link #write(Path, String)}. A
+ * snapshot is loaded by memory-mapping it with {@link #map(Path, String)}, after which
+ * lookups are answered directly from the mapped file.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ * @see <a href="https://en.wikipedia.org/wiki/Deterministic_acyclic_finite_state_automaton">
+ * Deterministic acyclic finite state automaton</a>
+ */
+class Dafsa implements WordList {
+
+	/** Identifies a snapshot file, the ASCII-characters 'TTDAFSA1' */
+	private static final long MAGIC = 0x5454444146534131L;
+
+	/** The edges of state s are stored in the positions [edges[s], edges[s +1]) */
+	private final IntBuffer edges;
+	/** The character consumed by each edge */
+	private final CharBuffer labels;
+	/** The state each edge leads to */
+	private final IntBuffer targets;
+	/** Bit s is set if the state s marks the end of a word */
+	private final LongBuffer finals;
+	/** The number of words accepted by the automaton */
+	private final int size;
+
+	/** A state of the automaton while it is being built */
+	private static final class Node {
+		boolean fin = false;
+		final ArrayList<Character> labels = new ArrayList<>(2);
+		final ArrayList<Node> children = new ArrayList<>(2);
+		int hash = 0;
+
+		/** Nodes are equal if they are equally final and their edges lead to the same nodes */
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof Node n) || fin != n.fin || !labels.equals(n.labels)) return false;
+			for(int i = 0; i < children.size(); i++) {
+				if(children.get(i) != n.children.get(i)) return false;
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			if(hash == 0) {
+				int h = fin? 1 : 2;
+				for(int i = 0; i < children.size(); i++) {
+					h = 31 * (31 * h + labels.get(i)) + System.identityHashCode(children.get(i));
+				}
+				hash = h;
+			}
+			return hash;
+		}
+	}
+
+	/**
+	 * Constructor. Builds the minimal automaton accepting exactly the given words.
+	 * @param words the lowercase words the automaton should accept
+	 */
+	Dafsa(Collection<String> words) {
+		String[] sorted = words.toArray(String[]::new);
+		Arrays.sort(sorted);
+
+		//Incremental construction for sorted input (Daciuk et al.): once a word has been
+		//added, the states of its suffix that are not shared with the next word are final
+		//and can be replaced by an equivalent state from the register.
+		final var register = new HashMap<Node, Node>();
+		final var path = new ArrayList<Node>(); //path.get(i) is reached after i characters
+		final Node root = new Node();
+		path.add(root);
+		String previous = "";
+		int count = 0;
+
+		for(String word: sorted) {
+			if(word.equals(previous) && count > 0) continue;
+			int common = 0;
+			final int max = Math.min(word.length(), previous.length());
+			while(common < max && word.charAt(common) == previous.charAt(common)) common++;
+
+			minimize(path, common, register);
+			Node node = path.get(common);
+			for(int i = common; i < word.length(); i++) {
+				Node next = new Node();
+				node.labels.add(word.charAt(i));
+				node.children.add(next);
+				path.add(next);
+				node = next;
+			}
+			node.fin = true;
+			previous = word;
+			count++;
+		}
+		minimize(path, 0, register);
+		size = count;
+
+		//Number the states in depth first order and store them in arrays
+		final var ids = new IdentityHashMap<Node, Integer>();
+		final var order = new ArrayList<Node>();
+		final var stack = new ArrayList<Node>();
+		int edgecount = 0;
+		stack.add(root);
+		while(!stack.isEmpty()) {
+			Node node = stack.remove(stack.size() -1);
+			if(ids.putIfAbsent(node, order.size()) != null) continue;
+			order.add(node);
+			edgecount += node.children.size();
+			for(int i = node.children.size() -1; i >= 0; i--) stack.add(node.children.get(i));
+		}
+
+		int[] edges = new int[order.size() +1];
+		char[] labels = new char[edgecount];
+		int[] targets = new int[edgecount];
+		long[] finals = new long[(order.size() + 63) >>> 6];
+		int e = 0;
+		for(int s = 0; s < order.size(); s++) {
+			Node node = order.get(s);
+			if(node.fin) finals[s >>> 6] |= 1L << s;
+			edges[s] = e;
+			for(int i = 0; i < node.children.size(); i++, e++) {
+				labels[e] = node.labels.get(i);
+				targets[e] = ids.get(node.children.get(i));
+			}
+		}
+		edges[order.size()] = e;
+
+		this.edges = IntBuffer.wrap(edges);
+		this.labels = CharBuffer.wrap(labels);
+		this.targets = IntBuffer.wrap(targets);
+		this.finals = LongBuffer.wrap(finals);
+	}
+
+	/**
+	 * Constructor for an automaton loaded from a snapshot.
+	 * @param buf the snapshot without its header
+	 * @param size the number of words accepted by the automaton
+	 * @param states the number of states of the automaton
+	 * @param edgecount the number of edges of the automaton
+	 */
+	private Dafsa(ByteBuffer buf, int size, int states, int edgecount) {
+		this.size = size;
+		finals = slice(buf, ((states + 63) >>> 6) * Long.BYTES).asLongBuffer();
+		edges = slice(buf, (states +1) * Integer.BYTES).asIntBuffer();
+		targets = slice(buf, edgecount * Integer.BYTES).asIntBuffer();
+		labels = slice(buf, edgecount * Character.BYTES).asCharBuffer();
+	}
+
+	/**
+	 * Cuts the next len bytes from buf.
+	 * @param buf the buffer to cut from
+	 * @param len the number of bytes to cut
+	 * @return a buffer containing the next len bytes of buf
+	 * @throws java.nio.BufferUnderflowException if buf contains less than len bytes
+	 */
+	private static ByteBuffer slice(ByteBuffer buf, int len) {
+		if(buf.remaining() < len) throw new BufferUnderflowException();
+		ByteBuffer res = buf.slice(buf.position(), len);
+		buf.position(buf.position() + len);
+		return res;
+	}
+
+	/**
+	 * The header of a snapshot is padded, so the arrays following it are aligned.
+	 * @param keylength the length of the encoded key in bytes
+	 * @return the number of bytes needed after the key to align the header to 8 bytes
+	 */
+	private static int padding(int keylength) {
+		return (8 - (Long.BYTES + Integer.BYTES + keylength) % 8) % 8;
+	}
+
+	/**
+	 * Writes the automaton to a snapshot file. The file is written to a temporary file
+	 * first and then moved to path, so readers never see an incomplete snapshot.
+	 * @param path the location of the snapshot
+	 * @param key identifies the source of the words, must be passed to {@link #map(Path, String)}
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	void write(Path path, String key) throws IOException {
+		Files.createDirectories(path.getParent());
+		Path tmp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		try(var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))){
+			byte[] k = key.getBytes(StandardCharsets.UTF_8);
+			out.writeLong(MAGIC);
+			out.writeInt(k.length);
+			out.write(k);
+			out.write(new byte[padding(k.length)]);
+			out.writeInt(size);
+			out.writeInt(states());
+			out.writeInt(labels.capacity());
+			out.writeInt(0);
+			for(int i = 0; i < finals.capacity(); i++) out.writeLong(finals.get(i));
+			for(int i = 0; i < edges.capacity(); i++) out.writeInt(edges.get(i));
+			for(int i = 0; i < targets.capacity(); i++) out.writeInt(targets.get(i));
+			for(int i = 0; i < labels.capacity(); i++) out.writeChar(labels.get(i));
+		} catch(IOException e) {
+			Files.deleteIfExists(tmp);
+			throw e;
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Memory-maps a snapshot file written by {@link #write(Path, String)}.
+	 * @param path the location of the snapshot
+	 * @param key identifies the source of the words the snapshot has to be built from
+	 * @return the automaton stored in the snapshot or null if there is no snapshot, if it was
+	 * built from a different source or if it is damaged
+	 */
+	static Dafsa map(Path path, String key) {
+		if(!Files.isRegularFile(path)) return null;
+		try(var channel = FileChannel.open(path, StandardOpenOption.READ)){
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buf.getLong() != MAGIC) return null;
+			byte[] k = key.getBytes(StandardCharsets.UTF_8);
+			byte[] stored = new byte[buf.getInt()];
+			buf.get(stored);
+			if(!Arrays.equals(k, stored)) return null;
+			buf.position(buf.position() + padding(stored.length));
+			int size = buf.getInt(), states = buf.getInt(), edgecount = buf.getInt();
+			buf.getInt();
+			return new Dafsa(buf, size, states, edgecount);
+		} catch(IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Replaces the states of path from the end down to the position downTo by equivalent
+	 * states from the register or registers them, if there are none.
+	 * @param path the states of the last word added
+	 * @param downTo the number of states of path that are shared with the next word
+	 * @param register the states already minimized
+	 */
+	private static void minimize(ArrayList<Node> path, int downTo, HashMap<Node, Node> register) {
+		for(int i = path.size() -1; i > downTo; i--) {
+			Node child = path.remove(i);
+			Node parent = path.get(i -1);
+			Node existing = register.putIfAbsent(child, child);
+			if(existing != null) parent.children.set(parent.children.size() -1, existing);
+		}
+	}
+
+	/**
+	 * @param state the state to leave
+	 * @param c the character to consume
+	 * @return the state reached by consuming c in state or -1 if there is no such edge
+	 */
+	int step(int state, char c) {
+		int L = firstEdge(state), R = endEdge(state) -1;
+		while(L <= R) {
+			int m = (L + R) >>> 1;
+			char l = labels.get(m);
+			if(l < c) {
+				L = m +1;
+			} else if(l > c) {
+				R = m -1;
+			} else {
+				return targets.get(m);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param state a state of the automaton
+	 * @return the index of the first outgoing edge of state
+	 */
+	int firstEdge(int state) {
+		return edges.get(state);
+	}
+
+	/**
+	 * @param state a state of the automaton
+	 * @return the index after the last outgoing edge of state
+	 */
+	int endEdge(int state) {
+		return edges.get(state +1);
+	}
+
+	/**
+	 * @param edge the index of an edge
+	 * @return the character consumed by edge
+	 */
+	char label(int edge) {
+		return labels.get(edge);
+	}
+
+	/**
+	 * @param edge the index of an edge
+	 * @return the state edge leads to
+	 */
+	int target(int edge) {
+		return targets.get(edge);
+	}
+
+	/**
+	 * @param state a state of the automaton
+	 * @return true if the state marks the end of a word
+	 */
+	boolean isFinal(int state) {
+		return (finals.get(state >>> 6) & (1L << state)) != 0;
+	}
+
+	@Override
+	public boolean contains(CharSequence word) {
+		int state = 0;
+		for(int i = 0; i < word.length() && state >= 0; i++) {
+			state = step(state, word.charAt(i));
+		}
+		return state >= 0 && isFinal(state);
+	}
+
+	@Override
+	public boolean contains(CharSequence text, int start, int end) {
+		int state = 0;
+		for(int i = start; i < end && state >= 0; i++) {
+			state = step(state, Character.toLowerCase(text.charAt(i)));
+		}
+		return state >= 0 && isFinal(state);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void forEach(Consumer<? super String> action) {
+		forEach(0, new StringBuilder(), action);
+	}
+
+	/**
+	 * Passes every word reachable from state to action.
+	 * @param state the current state
+	 * @param prefix the characters consumed to reach state
+	 * @param action the action to perform on each word
+	 */
+	private void forEach(int state, StringBuilder prefix, Consumer<? super String> action) {
+		if(isFinal(state)) action.accept(prefix.toString());
+		for(int e = firstEdge(state); e < endEdge(state); e++) {
+			prefix.append(label(e));
+			forEach(target(e), prefix, action);
+			prefix.setLength(prefix.length() -1);
+		}
+	}
+
+	/**
+	 * @return the number of states of the automaton
+	 */
+	int states() {
+		return edges.capacity() -1;
+	}
+}
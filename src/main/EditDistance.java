@@ -0,0 +1,389 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.util.Arrays;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Computes the Damerau-Levenshtein distance (in its optimal-string-alignment-variant, i.e.
+ * adjacent transpositions are allowed but no substring is edited twice) between a fixed
+ * pattern and any number of words. The pattern is preprocessed once, so the comparison of
+ * a word does not allocate. Once constructed, an instance may be shared between threads.
+ * <p>
+ * Patterns of up to 64 characters are handled with the bit-parallel algorithm by Hyyrö,
+ * which processes a whole column of the dynamic-programming-matrix with a handful of
+ * operations on a single long. Longer patterns fall back to a dynamic-programming-matrix
+ * restricted to the diagonal band that can still contain results within the cutoff.
+ * Both stop as soon as the distance is known to exceed the cutoff.
+ * <p>
+ * The optimal-string-alignment-distance does not satisfy the triangle inequality (e.g.
+ * "ca" -&gt; "ac" -&gt; "abc" takes 2 edits, but "ca" -&gt; "abc" 3), so it is not a metric.
+ * Indexes relying on the triangle inequality use the unrestricted distance
+ * ({@link #damerau(CharSequence)}) instead, which allows to edit between transposed
+ * characters and is never larger.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ * @see <a href="https://doi.org/10.1007/3-540-44888-8_4">H. Hyyrö: A Bit-Vector Algorithm
+ * for Computing Levenshtein and Damerau Edit Distances</a>
+ */
+final class EditDistance {
+
+	/** A cutoff that is never reached, set to {@value} */
+	static final int UNBOUNDED = Integer.MAX_VALUE / 2;
+
+	/** The number of characters that fit into a machine word, set to {@value} */
+	private static final int wordsize = Long.SIZE;
+
+	/** The word all other words are compared with */
+	private final String pattern;
+	/** The largest distance of interest. Larger distances are reported as max +1 */
+	private final int max;
+
+	/** The bit masks marking the positions of the characters below 256 in {@link #pattern} */
+	private final long[] peq = new long[256];
+	/** The characters from 256 upwards found in {@link #pattern} */
+	private char[] otherChars = new char[0];
+	/** The bit masks marking the positions of the characters in {@link #otherChars} */
+	private long[] otherMasks = new long[0];
+
+	/** The distinct characters of {@link #pattern}, sorted */
+	private final char[] alphabet;
+	/** The position +1 in {@link #alphabet} of each character below 256, 0 if pattern does not contain it */
+	private final short[] slots = new short[256];
+	/** The first and the last position in {@link #pattern} of each character of {@link #alphabet} */
+	private final int[] first, last;
+
+	/**
+	 * The rows of the matrix used for patterns longer than {@value #wordsize}. Kept per
+	 * thread, so a single instance can be used by several threads at once.
+	 */
+	private static final ThreadLocal<int[][]> rows = ThreadLocal.withInitial(() -> new int[3][0]);
+
+	/**
+	 * The matrix used by {@link #damerau(CharSequence, int)}, the last row each character of
+	 * {@link #alphabet} was seen in and the position in {@link #alphabet} of each character
+	 * of the word, followed by the first and the last position of each character of
+	 * {@link #alphabet} in the word. Kept per thread like {@link #rows}.
+	 */
+	private static final ThreadLocal<int[][]> matrix = ThreadLocal.withInitial(() -> new int[5][0]);
+
+	/**
+	 * Constructor. Preprocesses the pattern.
+	 * @param pattern the word the other words are compared with
+	 * @param max the largest distance of interest
+	 */
+	EditDistance(String pattern, int max) {
+		this.pattern = requireNonNull(pattern);
+		if(max < 0 || max > UNBOUNDED) throw new IllegalArgumentException("Invalid cutoff: " + max);
+		this.max = max;
+		char[] chars = pattern.toCharArray();
+		Arrays.sort(chars);
+		int distinct = 0;
+		for(char c: chars) {
+			if(distinct == 0 || chars[distinct -1] != c) chars[distinct++] = c;
+		}
+		alphabet = Arrays.copyOf(chars, distinct);
+		for(int i = 0; i < alphabet.length && alphabet[i] < slots.length; i++) slots[alphabet[i]] = (short) (i +1);
+		first = new int[alphabet.length];
+		last = new int[alphabet.length];
+		for(int i = pattern.length() -1; i >= 0; i--) first[slot(pattern.charAt(i))] = i;
+		for(int i = 0; i < pattern.length(); i++) last[slot(pattern.charAt(i))] = i;
+		if(pattern.length() > wordsize) return;
+
+		for(int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+			if(c < peq.length) {
+				peq[c] |= 1L << i;
+				continue;
+			}
+			int j = indexOf(c);
+			if(j < 0) {
+				j = otherChars.length;
+				otherChars = Arrays.copyOf(otherChars, j +1);
+				otherMasks = Arrays.copyOf(otherMasks, j +1);
+				otherChars[j] = c;
+			}
+			otherMasks[j] |= 1L << i;
+		}
+	}
+
+	/**
+	 * Constructor for comparisons without a cutoff.
+	 * @param pattern the word the other words are compared with
+	 */
+	EditDistance(String pattern) {
+		this(pattern, UNBOUNDED);
+	}
+
+	/**
+	 * @param c a character from 256 upwards
+	 * @return the position of c in {@link #otherChars} or -1
+	 */
+	private int indexOf(char c) {
+		for(int i = 0; i < otherChars.length; i++) {
+			if(otherChars[i] == c) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @param c a character
+	 * @return the bit mask marking the positions of c in {@link #pattern}
+	 */
+	private long mask(char c) {
+		if(c < peq.length) return peq[c];
+		int i = indexOf(c);
+		return (i < 0)? 0 : otherMasks[i];
+	}
+
+	/**
+	 * @param c a character
+	 * @return the position of c in {@link #alphabet} or -1
+	 */
+	private int slot(char c) {
+		if(c < slots.length) return slots[c] -1;
+		int i = Arrays.binarySearch(alphabet, c);
+		return (i < 0)? -1 : i;
+	}
+
+	/**
+	 * @return the largest distance of interest
+	 */
+	int max() {
+		return max;
+	}
+
+	/**
+	 * Computes the distance between {@link #pattern} and word.
+	 * @param word the word to compare with the pattern
+	 * @return the distance, or {@link #max()} +1 if the distance is larger than {@link #max()}
+	 */
+	int distance(CharSequence word) {
+		final int m = pattern.length(), n = word.length();
+		if(Math.abs(m - n) > max) return max +1;
+		if(m == 0) return n;
+		if(n == 0) return m;
+		return (m <= wordsize)? bitParallel(word) : banded(word);
+	}
+
+	/**
+	 * Hyyrö's bit-parallel algorithm. Bit i of VP (VN) is set if the value in row i of
+	 * the current column is larger (smaller) by one than the value in row i -1.
+	 * @param word the word to compare with the pattern
+	 * @return the distance, or {@link #max} +1 if the distance is larger than {@link #max}
+	 */
+	private int bitParallel(CharSequence word) {
+		final int n = word.length();
+		final long last = 1L << (pattern.length() -1);
+		long VP = -1L, VN = 0, D0 = 0, PMprev = 0;
+		int score = pattern.length();
+
+		for(int j = 0; j < n; j++) {
+			long PM = mask(word.charAt(j));
+			long TR = (((~D0) & PM) << 1) & PMprev;
+			D0 = (((PM & VP) + VP) ^ VP) | PM | VN | TR;
+			long HP = VN | ~(D0 | VP);
+			long HN = D0 & VP;
+			if((HP & last) != 0) {
+				score++;
+			} else if((HN & last) != 0) {
+				score--;
+			}
+			//Every remaining column lowers the score by at most one
+			if(score - (n - j -1) > max) return max +1;
+			HP = (HP << 1) | 1;
+			HN = HN << 1;
+			VP = HN | ~(D0 | HP);
+			VN = D0 & HP;
+			PMprev = PM;
+		}
+		return score;
+	}
+
+	/**
+	 * Dynamic programming restricted to the cells at most {@link #max} diagonals away from
+	 * the main diagonal. Only the last three rows of the matrix are kept.
+	 * @param word the word to compare with the pattern
+	 * @return the distance, or {@link #max} +1 if the distance is larger than {@link #max}
+	 * @see <a href="https://en.wikipedia.org/wiki/Damerau%E2%80%93Levenshtein_distance">
+	 * Damerau–Levenshtein distance</a>
+	 */
+	private int banded(CharSequence word) {
+		final int m = pattern.length(), n = word.length();
+		final int inf = max +1;
+		int[][] r = rows.get();
+		if(r[0].length <= n) {
+			for(int i = 0; i < r.length; i++) r[i] = new int[n +1];
+		}
+		int[] prev2 = r[0], prev = r[1], cur = r[2], tmp;
+
+		int hi = Math.min(n, max);
+		for(int j = 0; j <= hi; j++) prev[j] = j;
+		if(hi < n) prev[hi +1] = inf;
+
+		for(int i = 1; i <= m; i++) {
+			final int lo = Math.max(1, i - max);
+			hi = (int) Math.min(n, (long) i + max);
+			cur[lo -1] = (lo == 1 && i <= max)? i : inf;
+			int rowmin = cur[lo -1];
+			final char pc = pattern.charAt(i -1);
+
+			for(int j = lo; j <= hi; j++) {
+				final char wc = word.charAt(j -1);
+				int v = Math.min(Math.min(prev[j] +1, cur[j -1] +1), prev[j -1] + ((pc == wc)? 0 : 1));
+				if(i > 1 && j > 1 && pc == word.charAt(j -2) && pattern.charAt(i -2) == wc) {
+					v = Math.min(v, prev2[j -2] +1);
+				}
+				cur[j] = Math.min(v, inf);
+				rowmin = Math.min(rowmin, cur[j]);
+			}
+			if(hi < n) cur[hi +1] = inf;
+			if(rowmin > max) return inf;
+
+			tmp = prev2; prev2 = prev; prev = cur; cur = tmp;
+		}
+		return Math.min(prev[n], inf);
+	}
+
+	/**
+	 * Computes the unrestricted Damerau-Levenshtein distance between {@link #pattern} and
+	 * word, see {@link #damerau(CharSequence, int)}.
+	 * @param word the word to compare with the pattern
+	 * @return the distance, or {@link #max()} +1 if the distance is larger than {@link #max()}
+	 */
+	int damerau(CharSequence word) {
+		return damerau(word, max);
+	}
+
+	/**
+	 * Computes the unrestricted Damerau-Levenshtein distance between {@link #pattern} and
+	 * word with the algorithm by Lowrance and Wagner. Unlike {@link #distance(CharSequence)}
+	 * it satisfies the triangle inequality and it is never larger. Both are the same if
+	 * the optimal-string-alignment-distance is at most 2 or if no transposition with other
+	 * characters in between is possible (see {@link #gapped(CharSequence, int[][])}), and
+	 * since a transposition replaces at most two other edits, it is at least half of it. The
+	 * matrix is only filled for words these bounds do not decide, and only the cells at most
+	 * cutoff diagonals away from the main diagonal.
+	 * @param word the word to compare with the pattern
+	 * @param cutoff the largest distance of interest, at most {@link #max()}
+	 * @return the distance, or cutoff +1 if the distance is larger than cutoff
+	 * @see <a href="https://doi.org/10.1145/321879.321880">R. Lowrance, R. A. Wagner: An
+	 * Extension of the String-to-String Correction Problem</a>
+	 */
+	int damerau(CharSequence word, int cutoff) {
+		final int m = pattern.length(), n = word.length();
+		if(Math.abs(m - n) > cutoff) return cutoff +1;
+		final int osa = distance(word);
+		if(osa <= 2 || (osa +1) / 2 > cutoff) return Math.min(osa, cutoff +1);
+
+		int[][] t = matrix.get();
+		if(!gapped(word, t)) return Math.min(osa, cutoff +1);
+
+		final int w = n +2, inf = cutoff +1;
+		if(t[0].length < (m +2) * w) t[0] = new int[(m +2) * w];
+		if(t[1].length < alphabet.length) t[1] = new int[alphabet.length];
+		if(t[2].length < n) t[2] = new int[n];
+		//h[(i +1) * w + j +1] is the distance between the first i chars of pattern and of word
+		final int[] h = t[0], seen = t[1], columns = t[2];
+		Arrays.fill(seen, 0, alphabet.length, 0);
+		for(int j = 0; j < n; j++) columns[j] = slot(word.charAt(j));
+		for(int j = 0; j <= n; j++) {
+			h[j +1] = inf;
+			h[w + j +1] = Math.min(j, inf);
+		}
+		for(int i = 0; i <= m; i++) {
+			h[(i +1) * w] = inf;
+			h[(i +1) * w +1] = Math.min(i, inf);
+		}
+
+		//A lower bound for the distance: a transposition skipping rows costs at least one per row
+		int bound = 0;
+		for(int i = 1; i <= m; i++) {
+			final int lo = Math.max(1, i - cutoff), hi = Math.min(n, i + cutoff), row = (i +1) * w, up = i * w;
+			if(lo > 1) h[row + lo] = inf;
+			final char pc = pattern.charAt(i -1);
+			int rowmin = (lo == 1)? h[row +1] : inf;
+			int same = 0; //the last column up to j whose char equals pc
+			int left = h[row + lo];
+			for(int j = lo; j <= hi; j++) {
+				final int slot = columns[j -1];
+				int v;
+				if(pc == word.charAt(j -1)) {
+					v = h[up + j];
+					same = j;
+				} else {
+					v = Math.min(Math.min(h[up + j], left), h[up + j +1]) +1;
+					final int k = (slot < 0)? 0 : seen[slot], l = same;
+					//Cells further than cutoff from the main diagonal are not filled in
+					if(k > 0 && l > 0 && k - l <= cutoff && l - k <= cutoff) {
+						v = Math.min(v, h[k * w + l] + (i - k) + (j - l -1));
+					}
+					v = Math.min(v, inf);
+				}
+				h[row + j +1] = left = v;
+				rowmin = Math.min(rowmin, v);
+			}
+			if(hi < n) h[row + hi +2] = inf;
+			bound = Math.min(rowmin, bound +1);
+			if(bound > cutoff) return inf;
+			seen[slot(pc)] = i;
+		}
+		return h[(m +1) * w + n +1];
+	}
+
+	/**
+	 * Checks whether the unrestricted distance between {@link #pattern} and word may use a
+	 * transposition with other characters in between, the only edit the
+	 * optimal-string-alignment-distance lacks. If there are characters in between on both
+	 * sides, substitutions are at least as cheap, so this requires two different characters
+	 * that are adjacent in one of the words and in reverse order with at least one character
+	 * in between in the other.
+	 * @param word the word to compare with the pattern
+	 * @param t the arrays kept per thread, see {@link #matrix}
+	 * @return false if both distances are the same
+	 */
+	private boolean gapped(CharSequence word, int[][] t) {
+		final int n = word.length();
+		if(t[3].length < alphabet.length) {
+			t[3] = new int[alphabet.length];
+			t[4] = new int[alphabet.length];
+		}
+		final int[] wfirst = t[3], wlast = t[4];
+		Arrays.fill(wfirst, 0, alphabet.length, -1);
+		int prev = -1;
+		for(int j = 0; j < n; j++) {
+			final int y = slot(word.charAt(j));
+			if(y < 0) {
+				prev = -1;
+				continue;
+			}
+			//Adjacent in word, reversed in pattern
+			if(prev >= 0 && prev != y && first[y] < last[prev] -1) return true;
+			if(wfirst[y] < 0) wfirst[y] = j;
+			wlast[y] = j;
+			prev = y;
+		}
+		for(int i = 0; i +1 < pattern.length(); i++) {
+			final int x = slot(pattern.charAt(i)), y = slot(pattern.charAt(i +1));
+			//Adjacent in pattern, reversed in word
+			if(x != y && wfirst[y] >= 0 && wfirst[x] >= 0 && wfirst[y] < wlast[x] -1) return true;
+		}
+		return false;
+	}
+}
@@ -135,7 +135,20 @@ public final class FileHelpers {
 	 * XDG Base Directory Specification</a>
 	 */
 	public static Path getCacheDir(String appname) {
-		return getXDGDir("XGD_STATE_HOME", ".cache", appname);
+		return getXDGDir("XDG_CACHE_HOME", ".cache", appname);
+	}
+
+	/**
+	 * Returns the runtime-file-directory (for sockets and the like) according to the XDG
+	 * Base Directory Specification. Since the specification does not define a default,
+	 * the cache-file-directory is used if XDG_RUNTIME_DIR is not set.
+	 * @param appname the name of the program
+	 * @return the runtime-file-directory corresponding to the appname
+	 * @see <a href="https://specifications.freedesktop.org/basedir-spec/basedir-spec-latest.html">
+	 * XDG Base Directory Specification</a>
+	 */
+	public static Path getRuntimeDir(String appname) {
+		return getXDGDir("XDG_RUNTIME_DIR", ".cache", appname);
 	}
 
 	/**
@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Remembers the mistakes found in every line of a file from one search to the next, so
+ * a {@link main.Parser} only has to check the lines that changed in between. The lines are
+ * identified by a 64-bit hash of their content instead of their number, so a line that
+ * only moved (e.g. because lines were inserted above it) is found again as well. For
+ * every line the positions of its mistakes are stored as pairs of start and end.
+ * <p>
+ * The lines of the last search are kept in a {@link Table} of primitive arrays. Of the
+ * current search only the hash of every line is recorded; the positions of its mistakes
+ * are taken from the mistakes found when the cache is saved.
+ * <p>
+ * The table is stored in a binary file in the directory from
+ * {@link FileHelpers#getCacheDir(String)}. It is discarded when the dictionaries changed
+ * (see {@link Checker#fingerprint()}). Looking up lines and recording different lines is
+ * thread-safe, saving is not.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+final class LineCache {
+
+	/** Marks a line cache, set to {@value} ("TTLINE02") */
+	private static final long MAGIC = 0x54544C494E453032L;
+
+	/** The positions of the mistakes in a line without mistakes */
+	static final int[] NONE = new int[0];
+
+	/** The lines from the last search */
+	private final Table previous;
+	/** The hash of every line of the current search */
+	private final long[] hashes;
+
+	private LineCache(Table previous, int lines) {
+		this.previous = previous;
+		this.hashes = new long[lines];
+	}
+
+	/**
+	 * A hash table from the hash of a line to the positions of its mistakes, using open
+	 * addressing with linear probing. The positions of all lines are stored one after
+	 * another in {@link #data}, each run preceded by its length; all lines without
+	 * mistakes share the run at 0.
+	 */
+	private static final class Table {
+		/** The hashes of the lines */
+		private long[] keys;
+		/** refs[i] is 1 + the start of the run of keys[i] in {@link #data}, 0 for a free slot */
+		private int[] refs;
+		/** The runs of positions */
+		private int[] data = new int[16];
+		/** The number of lines and the number of used elements of {@link #data} */
+		private int size = 0, used = 1;
+
+		Table(int expected) {
+			int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 -1) * 2;
+			keys = new long[capacity];
+			refs = new int[capacity];
+		}
+
+		/**
+		 * @param hash the hash of a line
+		 * @return the slot containing hash or the free slot it would be put into
+		 */
+		private int slot(long hash) {
+			int mask = keys.length -1;
+			int i = (int) (hash ^ (hash >>> 32)) & mask;
+			while(refs[i] != 0 && keys[i] != hash) i = (i +1) & mask;
+			return i;
+		}
+
+		/**
+		 * @param hash the hash of a line
+		 * @return true if the table contains the line
+		 */
+		boolean contains(long hash) {
+			return refs[slot(hash)] != 0;
+		}
+
+		/**
+		 * @param hash the hash of a line
+		 * @return the positions of the mistakes in the line or null if the table does not contain it
+		 */
+		int[] get(long hash) {
+			int ref = refs[slot(hash)];
+			if(ref == 0) return null;
+			int count = data[ref -1];
+			return (count == 0)? NONE : Arrays.copyOfRange(data, ref, ref + count);
+		}
+
+		/**
+		 * Adds a line, unless the table already contains it.
+		 * @param hash the hash of the line
+		 * @param positions the positions of the mistakes in the line
+		 * @param count the number of elements of positions to use
+		 * @return true if the line was added
+		 */
+		boolean put(long hash, int[] positions, int count) {
+			int i = slot(hash);
+			if(refs[i] != 0) return false;
+			int ref = 0;
+			if(count > 0) {
+				if(used + count +1 > data.length) data = Arrays.copyOf(data, Math.max(data.length * 2, used + count +1));
+				ref = used;
+				data[used++] = count;
+				System.arraycopy(positions, 0, data, used, count);
+				used += count;
+			}
+			keys[i] = hash;
+			refs[i] = ref +1;
+			if(++size * 2 > keys.length) grow();
+			return true;
+		}
+
+		/**
+		 * Doubles the capacity of the table.
+		 */
+		private void grow() {
+			long[] oldkeys = keys;
+			int[] oldrefs = refs;
+			keys = new long[oldkeys.length * 2];
+			refs = new int[oldrefs.length * 2];
+			for(int i = 0; i < oldkeys.length; i++) {
+				if(oldrefs[i] == 0) continue;
+				int j = slot(oldkeys[i]);
+				keys[j] = oldkeys[i];
+				refs[j] = oldrefs[i];
+			}
+		}
+
+		int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Returns the location of the line cache for a file.
+	 * @param file the checked file
+	 * @return the location of the line cache
+	 */
+	static Path path(Path file) {
+		String source = file.toAbsolutePath().normalize().toString();
+		UUID id = UUID.nameUUIDFromBytes(source.getBytes(StandardCharsets.UTF_8));
+		return FileHelpers.getCacheDir("TypoTattler").resolve("lines-" + id + ".bin");
+	}
+
+	/**
+	 * Computes the hash identifying the content of a line (64-bit FNV-1a over the characters).
+	 * @param line the line
+	 * @return the hash of the line
+	 */
+	static long hash(CharSequence line) {
+		long h = 0xCBF29CE484222325L ^ line.length();
+		for(int i = 0; i < line.length(); i++) h = (h ^ line.charAt(i)) * 0x100000001B3L;
+		return h ^ (h >>> 32);
+	}
+
+	/**
+	 * Loads the lines of the last search of a file.
+	 * @param file the checked file
+	 * @param key the fingerprint of the dictionaries
+	 * @param lines the number of lines of the current search
+	 * @return the cache, empty if there was no last search, if it is damaged or if the
+	 * dictionaries changed since then
+	 */
+	static LineCache load(Path file, String key, int lines) {
+		Path cachefile = path(file);
+		if(!Files.exists(cachefile)) return new LineCache(new Table(0), lines);
+		try(var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cachefile)))){
+			if(in.readLong() != MAGIC || !in.readUTF().equals(key)) return new LineCache(new Table(0), lines);
+			var table = new Table(Math.min(in.readInt(), 1 << 20)); //grows if needed, whatever the file claims
+			int[] positions = new int[16];
+			while(true) {
+				long hash = in.readLong();
+				int count = in.readInt();
+				if(count < 0) break;
+				if(count > positions.length) positions = new int[Math.max(count, positions.length * 2)];
+				for(int i = 0; i < count; i++) positions[i] = in.readInt();
+				table.put(hash, positions, count);
+			}
+			return new LineCache(table, lines);
+		} catch(IOException | RuntimeException e) {
+			return new LineCache(new Table(0), lines);
+		}
+	}
+
+	/**
+	 * @param hash the hash of a line (see {@link #hash(CharSequence)})
+	 * @return the positions of the mistakes in the line as found by the last search or null
+	 * if the line was not part of the file then
+	 */
+	int[] get(long hash) {
+		return previous.get(hash);
+	}
+
+	/**
+	 * Records the hash of a line of the current search.
+	 * @param line the number of the line
+	 * @param hash the hash of the line (see {@link #hash(CharSequence)})
+	 */
+	void record(int line, long hash) {
+		hashes[line] = hash;
+	}
+
+	/**
+	 * Stores the lines of the current search, replacing the cache file atomically. Nothing is
+	 * written if the file contains the same distinct lines as during the last search.
+	 * @param file the checked file
+	 * @param key the fingerprint of the dictionaries
+	 * @param mistakes the mistakes found by the current search, ordered by line and column
+	 * @throws IOException if the cache file cannot be written
+	 */
+	void save(Path file, String key, Occurrences mistakes) throws IOException {
+		//The first occurrence of every distinct line, so identical lines are only stored once
+		var distinct = new Table(Math.min(hashes.length, previous.size() + 1024));
+		int[] firsts = new int[16];
+		boolean changed = false;
+		for(int line = 0; line < hashes.length; line++) {
+			if(!distinct.put(hashes[line], NONE, 0)) continue;
+			if(distinct.size() > firsts.length) firsts = Arrays.copyOf(firsts, firsts.length * 2);
+			firsts[distinct.size() -1] = line;
+			changed |= !previous.contains(hashes[line]);
+		}
+		if(!changed && distinct.size() == previous.size()) return;
+
+		Path cachefile = path(file);
+		Files.createDirectories(cachefile.getParent());
+		Path tmp = Files.createTempFile(cachefile.getParent(), cachefile.getFileName().toString(), ".tmp");
+		try {
+			try(var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))){
+				out.writeLong(MAGIC);
+				out.writeUTF(key);
+				out.writeInt(distinct.size());
+				int m = 0;
+				for(int i = 0; i < distinct.size(); i++) {
+					final int line = firsts[i];
+					while(m < mistakes.size() && mistakes.line(m) < line) m++;
+					int end = m;
+					while(end < mistakes.size() && mistakes.line(end) == line) end++;
+					out.writeLong(hashes[line]);
+					out.writeInt((end - m) * 2);
+					for(int j = m; j < end; j++) {
+						out.writeInt(mistakes.column(j));
+						out.writeInt(mistakes.end(j));
+					}
+				}
+				out.writeLong(0);
+				out.writeInt(-1);
+			}
+			Files.move(tmp, cachefile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+}
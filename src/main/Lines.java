@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The lines of a text file in the form they were read in. Iterating over the lines yields
+ * them in order. The corrections to the lines are kept by a {@link main.PieceTable}.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+public interface Lines extends Iterable<String> {
+
+	/**
+	 * @return the number of lines
+	 */
+	int size();
+
+	/**
+	 * @param i the number of the line (zero-based)
+	 * @return the line without its line terminator
+	 */
+	String get(int i);
+
+	/**
+	 * @param i the number of the line (zero-based)
+	 * @return the number of characters of the line without its line terminator
+	 */
+	default int length(int i) {
+		return get(i).length();
+	}
+
+	/**
+	 * Checks whether a line contains text at a position. Implementations that do not keep
+	 * the lines as Strings compare text without decoding the line.
+	 * @param line the number of the line (zero-based)
+	 * @param column the position in the line text has to start at
+	 * @param text the expected text
+	 * @return true if the characters of the line starting at column are those of text
+	 */
+	default boolean matches(int line, int column, String text) {
+		return get(line).startsWith(text, column);
+	}
+
+	/**
+	 * Returns the position in the file of a character of a line, i.e. the number of bytes
+	 * in the file before the UTF-8 encoding of the character.
+	 * @param line the number of the line (zero-based)
+	 * @param column the position of the character in the line, may be the length of the
+	 * line to refer to the end of the line
+	 * @return the position of the character in the file
+	 */
+	long position(int line, int column);
+
+	/**
+	 * Passes the lines in [from, to) to visitor, in order. The
+	 * character sequence passed to the visitor may be reused for the next line, so it must
+	 * not be kept after the visitor returns.
+	 * @param from the number of the first line to visit
+	 * @param to the number after the last line to visit
+	 * @param visitor receives each line and its number
+	 */
+	void scan(int from, int to, ObjIntConsumer<CharSequence> visitor);
+}
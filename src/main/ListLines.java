@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * {@link main.Lines} that are read completely into memory, one String per line. Like
+ * {@link java.nio.file.Files#readAllLines(Path)} the file is decoded as UTF-8 and lines
+ * are terminated by '\n', '\r' or "\r\n". The position of every line in the file is kept,
+ * so the characters of a line can be traced back to the bytes they were decoded from.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+class ListLines implements Lines {
+
+	/** The lines of the file */
+	private final ArrayList<String> lines = new ArrayList<>();
+	/** The position in the file of the first byte of each line */
+	private long[] starts = new long[16];
+
+	/**
+	 * Constructor. Reads all lines of a file.
+	 * @param path the file to read
+	 * @throws IOException if the file cannot be read or is not valid UTF-8
+	 */
+	ListLines(Path path) throws IOException {
+		byte[] bytes = Files.readAllBytes(path);
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+		int pos = 0;
+		while(pos < bytes.length) {
+			int end = pos;
+			while(end < bytes.length && bytes[end] != '\n' && bytes[end] != '\r') end++;
+			if(lines.size() == starts.length) starts = Arrays.copyOf(starts, starts.length * 2);
+			starts[lines.size()] = pos;
+			lines.add(decoder.decode(ByteBuffer.wrap(bytes, pos, end - pos)).toString());
+			pos = (end +1 < bytes.length && bytes[end] == '\r' && bytes[end +1] == '\n')? end +2 : end +1;
+		}
+	}
+
+	@Override
+	public int size() {
+		return lines.size();
+	}
+
+	@Override
+	public String get(int i) {
+		return lines.get(i);
+	}
+
+	@Override
+	public long position(int line, int column) {
+		String s = lines.get(line);
+		java.util.Objects.checkIndex(column, s.length() +1);
+		long pos = starts[line];
+		for(int i = 0; i < column; i++) {
+			char c = s.charAt(i);
+			if(c < 0x80) pos += 1;
+			else if(c < 0x800) pos += 2;
+			else if(Character.isHighSurrogate(c)) pos += 4;
+			else if(!Character.isLowSurrogate(c)) pos += 3;
+		}
+		return pos;
+	}
+
+	@Override
+	public void scan(int from, int to, ObjIntConsumer<CharSequence> visitor) {
+		for(int i = from; i < to; i++) visitor.accept(lines.get(i), i);
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return lines.iterator();
+	}
+}
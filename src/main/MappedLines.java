@@ -0,0 +1,362 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * {@link main.Lines} of a memory-mapped UTF-8 file. The text is never copied onto the heap
+ * as a whole: only the start of every {@value #indexstep}th line is recorded and a line is
+ * decoded when it is requested. Lines are terminated by '\n', '\r' or "\r\n", just as with
+ * {@link java.nio.file.Files#readAllLines(Path)}, so the memory needed stays small no
+ * matter how large the file is.
+ * <p>
+ * Like {@link main.ListLines} the file has to be valid UTF-8: every line containing
+ * non-ASCII bytes is decoded strictly while the index is built, because
+ * {@link #position(int, int)} derives byte offsets from the UTF-8 sequences, which would
+ * not match the characters of replaced malformed input.
+ * <p>
+ * Files larger than 2 GB are mapped in several segments.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+class MappedLines implements Lines {
+
+	/** The number of bits addressing a byte within a segment, set to {@value} */
+	private static final int segmentbits = 30;
+	/** The size of a segment in bytes */
+	private static final long segmentsize = 1L << segmentbits;
+	/** Every {@value}th line has its start recorded in {@link #index} */
+	private static final int indexstep = 64;
+
+	/** The mapped file, cut into segments of {@link #segmentsize} bytes */
+	private final MappedByteBuffer[] segments;
+	/** The size of the file in bytes */
+	private final long length;
+	/** index[k] holds the position of the first byte of line k * {@value #indexstep} */
+	private long[] index = new long[16];
+	/** The number of lines */
+	private int size = 0;
+
+	/**
+	 * Constructor. Maps the file, records the start of every {@value #indexstep}th line and
+	 * checks that the file is valid UTF-8.
+	 * @param path the file to map
+	 * @throws IOException if the file cannot be mapped or is not valid UTF-8
+	 */
+	MappedLines(Path path) throws IOException {
+		try(var channel = FileChannel.open(path, StandardOpenOption.READ)){
+			length = channel.size();
+			segments = new MappedByteBuffer[(int) ((length + segmentsize -1) >>> segmentbits)];
+			for(int i = 0; i < segments.length; i++) {
+				long pos = (long) i << segmentbits;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(segmentsize, length - pos));
+			}
+		}
+
+		long pos = 0;
+		while(pos < length) {
+			if(size % indexstep == 0) {
+				if(size / indexstep == index.length) index = Arrays.copyOf(index, index.length * 2);
+				index[size / indexstep] = pos;
+			}
+			long end = pos;
+			int or = 0;
+			byte b;
+			while(end < length && (b = get(end)) != '\n' && b != '\r') {
+				or |= b;
+				end++;
+			}
+			if(or < 0) strict(copy(pos, end));
+			pos = next(end);
+			size++;
+		}
+	}
+
+	/**
+	 * @param pos a position in the file
+	 * @return the byte at pos
+	 */
+	private byte get(long pos) {
+		return segments[(int) (pos >>> segmentbits)].get((int) (pos & (segmentsize -1)));
+	}
+
+	/**
+	 * @param start the position of the first byte of a line
+	 * @return the position of the line terminator (or the end of the file) ending the line
+	 */
+	private long end(long start) {
+		long pos = start;
+		byte b;
+		while(pos < length && (b = get(pos)) != '\n' && b != '\r') pos++;
+		return pos;
+	}
+
+	/**
+	 * @param end the position of a line terminator
+	 * @return the position of the first byte of the next line
+	 */
+	private long next(long end) {
+		if(end >= length) return length;
+		if(get(end) == '\r' && end +1 < length && get(end +1) == '\n') return end +2;
+		return end +1;
+	}
+
+	/**
+	 * @param i the number of a line
+	 * @return the position of the first byte of the line
+	 */
+	private long start(int i) {
+		long pos = index[i / indexstep];
+		for(int j = i % indexstep; j > 0; j--) pos = next(end(pos));
+		return pos;
+	}
+
+	/**
+	 * Copies the bytes in [start, end).
+	 * @param start the position of the first byte
+	 * @param end the position after the last byte
+	 * @return the copied bytes
+	 */
+	private byte[] copy(long start, long end) {
+		byte[] bytes = new byte[Math.toIntExact(end - start)];
+		for(int i = 0; i < bytes.length; i++) bytes[i] = get(start + i);
+		return bytes;
+	}
+
+	/**
+	 * Decodes bytes as UTF-8, reporting malformed input instead of replacing it.
+	 * @param bytes the bytes to decode
+	 * @return the decoded String
+	 * @throws CharacterCodingException if the bytes are not valid UTF-8
+	 */
+	private static String strict(byte[] bytes) throws CharacterCodingException {
+		return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes)).toString();
+	}
+
+	/**
+	 * Decodes the bytes in [start, end).
+	 * @param start the position of the first byte
+	 * @param end the position after the last byte
+	 * @return the decoded String
+	 * @throws UncheckedIOException if the bytes are not valid UTF-8, which the constructor
+	 * already ruled out unless the file was modified while mapped
+	 */
+	private String decode(long start, long end) {
+		try {
+			return strict(copy(start, end));
+		} catch(CharacterCodingException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String get(int i) {
+		java.util.Objects.checkIndex(i, size);
+		long start = start(i);
+		return decode(start, end(start));
+	}
+
+	/**
+	 * @param b the first byte of a UTF-8 sequence
+	 * @return the number of bytes of the sequence
+	 */
+	private static int sequence(byte b) {
+		int u = b & 0xFF;
+		return (u >= 0xF0)? 4 : (u >= 0xE0)? 3 : (u >= 0xC0)? 2 : 1;
+	}
+
+	/**
+	 * Counts the chars the UTF-8 sequences of the line decode to, without decoding them.
+	 */
+	@Override
+	public int length(int i) {
+		java.util.Objects.checkIndex(i, size);
+		long pos = start(i);
+		final long end = end(pos);
+		int chars = 0;
+		while(pos < end) {
+			int len = sequence(get(pos));
+			chars += (len == 4)? 2 : 1;
+			pos += len;
+		}
+		return chars;
+	}
+
+	/**
+	 * Walks the UTF-8 sequences of the line: a four-byte sequence is decoded into two
+	 * chars, every other sequence into one.
+	 */
+	@Override
+	public long position(int line, int column) {
+		java.util.Objects.checkIndex(line, size);
+		long pos = start(line);
+		final long end = end(pos);
+		for(int chars = 0; chars < column;) {
+			if(pos >= end) throw new IndexOutOfBoundsException("Column " + column + " is beyond the end of line " + line);
+			int len = sequence(get(pos));
+			chars += (len == 4)? 2 : 1;
+			pos = Math.min(pos + len, end);
+		}
+		return pos;
+	}
+
+	/**
+	 * Walks the UTF-8 sequences of the line up to column like {@link #position(int, int)}
+	 * and then compares the bytes of the file with text encoded char by char, so neither
+	 * the line nor text is copied. Only if column or text split a surrogate pair, the line
+	 * is decoded.
+	 */
+	@Override
+	public boolean matches(int line, int column, String text) {
+		java.util.Objects.checkIndex(line, size);
+		if(column < 0) return false;
+		long pos = start(line);
+		final long end = end(pos);
+		int chars = 0;
+		while(chars < column && pos < end) {
+			int len = sequence(get(pos));
+			chars += (len == 4)? 2 : 1;
+			pos += len;
+		}
+		if(chars > column) return get(line).startsWith(text, column);
+		if(chars != column) return false;
+		for(int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if(c < 0x80) {
+				if(pos >= end || get(pos++) != c) return false;
+				continue;
+			}
+			int cp = c, len = (c < 0x800)? 2 : 3;
+			if(Character.isHighSurrogate(c)) {
+				if(i +1 == text.length()) return get(line).startsWith(text, column);
+				if(!Character.isLowSurrogate(text.charAt(i +1))) return false; //valid UTF-8 has no unpaired surrogates
+				cp = Character.toCodePoint(c, text.charAt(++i));
+				len = 4;
+			}
+			if(pos + len > end) return false;
+			int lead = (len == 2)? 0xC0 : (len == 3)? 0xE0 : 0xF0;
+			if((get(pos) & 0xFF) != (lead | cp >>> 6 * (len -1))) return false;
+			for(int k = 1; k < len; k++) {
+				if((get(pos + k) & 0xFF) != (0x80 | (cp >>> 6 * (len -1 -k) & 0x3F))) return false;
+			}
+			pos += len;
+		}
+		return true;
+	}
+
+	/**
+	 * A line consisting only of ASCII-characters, read directly from the mapped file.
+	 */
+	private final class AsciiLine implements CharSequence {
+		long start;
+		int length;
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) get(start + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return decode(this.start + start, this.start + end);
+		}
+
+		@Override
+		public String toString() {
+			return decode(start, start + length);
+		}
+	}
+
+	/**
+	 * Lines consisting only of ASCII-characters are passed to the visitor without decoding
+	 * them, all other lines are decoded first.
+	 */
+	@Override
+	public void scan(int from, int to, ObjIntConsumer<CharSequence> visitor) {
+		if(from >= to) return;
+		var ascii = new AsciiLine();
+		long pos = start(from);
+		for(int i = from; i < to; i++) {
+			long end = pos;
+			int or = 0;
+			byte b;
+			while(end < length && (b = get(end)) != '\n' && b != '\r') {
+				or |= b;
+				end++;
+			}
+			if(or >= 0) {
+				ascii.start = pos;
+				ascii.length = Math.toIntExact(end - pos);
+				visitor.accept(ascii, i);
+			} else {
+				visitor.accept(decode(pos, end), i);
+			}
+			pos = next(end);
+		}
+	}
+
+	/**
+	 * Iterates sequentially over the lines, so no line has to be looked up in the index.
+	 */
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			int i = 0;
+			long pos = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < size;
+			}
+
+			@Override
+			public String next() {
+				if(!hasNext()) throw new NoSuchElementException();
+				long end = end(pos);
+				String line = decode(pos, end);
+				pos = MappedLines.this.next(end);
+				i++;
+				return line;
+			}
+		};
+	}
+}
@@ -23,6 +23,10 @@ import static java.util.Objects.requireNonNull;
 /**
  * 
  * This class represents a word that is not known to the dictionary in {@link main.Checker}.
+ * The mistakes of a {@link main.Parser} are stored compactly and a mistake is only created
+ * when it is requested, so there may be several objects for the same mistake. Whether it
+ * is still valid and which mistakes share its spelling is therefore looked up in the
+ * parser.
  * @version 0.2
  * @author Jan Philipp Berg
  *
@@ -38,47 +42,68 @@ public class Mistake implements Comparable<Mistake> {
 	/** The line number from the original text file the mistake was found at */
 	public int lineno; 
 
+	/** The position of the first character of the mistake in its line */
+	public int column;
+
+	/** The position after the last character of the mistake in its line */
+	public int end;
+
 	/** The most similar words {@link main.Checker} could find */
 	public String[] suggestions; 
 
 	/** true if the original word started with an uppercase */
 	public boolean uppercase;
 
-	/** Points to the next mistake for a word written in the same way as this word */
-	public Mistake next = null;
-
-	/**If the user decides that the spelling of wrongword was not an error this is set to
-	 * false 
-	 */
-	public boolean valid = true; 
+	/** The position of the mistake in the list of mistakes of {@link #origin} */
+	int index = -1;
 
 
 	/**
-	 * Constructor. Creates a new mistake based on the {@link main.Parser}, the line
-	 * number the mistake was found on and the spelling of the mistake.
+	 * Constructor. Creates a new mistake based on the {@link main.Parser}, the position
+	 * the mistake was found at and the spelling of the mistake.
 	 * @param origin The {@link main.Parser} that identified the mistake
 	 * @param lineno The line number in the original document the mistake was found on
+	 * @param column The position of the mistake in its line
 	 * @param wrongword The spelling of the mistake
 	 */
-	Mistake(Parser origin, int lineno, String wrongword){
+	Mistake(Parser origin, int lineno, int column, String wrongword){
 		requireNonNull(origin); requireNonNull(wrongword);
 		this.wrongword = wrongword;
 		this.origin = origin;
 		this.lineno = lineno;
+		this.column = column;
+		this.end = column + wrongword.length();
 		suggestions = null;
 		uppercase = Character.isUpperCase(wrongword.charAt(0));
 	}
 
+	/**
+	 * @return the next mistake for a word written in the same way as this word, null if
+	 * there is none
+	 */
+	public Mistake next() {
+		return origin.sameSpelling(this);
+	}
+
+	/**
+	 * @return false if the user decided that the spelling of wrongword was not an error or
+	 * replaced it (see {@link main.Parser#invalidate(Mistake)})
+	 */
+	public boolean isValid() {
+		return origin.isValid(this);
+	}
+
 	/**
 	 * Generates {@link main.Mistake#suggestions} this mistake based on similarities with other words from
-	 * the dictionary. The suggestions are passed on to similar mistakes to avoid reprocessing.
+	 * the dictionary. The suggestions are cached by {@link main.Checker#suggest(String)},
+	 * so mistakes with the same spelling do not compute them again.
 	 * @return True if there were words similar to the mistake, false if no similarities
 	 * to known words exist
 	 */
 	public boolean getSuggestions() {
 		if(suggestions == null) {
-			suggestions = origin.checker.guess(wrongword);
-			passOnSuggestions();
+			//A copy, since the array cached by the checker must not be capitalized
+			suggestions = origin.checker.suggest(wrongword).clone();
 		}
 		if(suggestions.length == 0) return false;
 		if(uppercase && Character.isUpperCase(suggestions[0].charAt(0))) {
@@ -91,18 +116,6 @@ public class Mistake implements Comparable<Mistake> {
 		return true;
 	}
 
-	/**
-	 * Passes the generated suggestions to all mistakes with the same spelling.
-	 */
-	private void passOnSuggestions() {
-		this.getSuggestions();
-		Mistake m = this;
-		while(m.next != null) {
-			m = m.next;
-			m.suggestions = this.suggestions;
-		}
-	}
-
 	/**
 	 * Prints the {@link main.Mistake#suggestions} for this mistake. If they are not
 	 * generated yet it tries to generate them.
@@ -131,8 +144,8 @@ public class Mistake implements Comparable<Mistake> {
 	public void invalidateAll() {
 		Mistake m = this;
 		do {
-			m.valid = false;
-			m = m.next;
+			origin.invalidate(m);
+			m = m.next();
 		}
 		while(m != null);
 	}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The mistakes found in a file, stored compactly: for every occurrence only its line, its
+ * column and the number of its spelling are kept in primitive arrays, while every distinct
+ * spelling is stored only once. Occurrences with the same spelling (ignoring case) are
+ * linked, so all of them can be visited without looking at the others. A
+ * {@link main.Mistake} is only created by {@link main.Parser} when one is requested, so
+ * the memory needed grows by four ints per occurrence instead of an object and a String.
+ * <p>
+ * Occurrences are added in the order they occur in the text. Once {@link #link()} was
+ * called, no more can be added.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+final class Occurrences {
+
+	/** The number of the line of each occurrence */
+	private int[] lines = new int[16];
+	/** The position of each occurrence in its line */
+	private int[] columns = new int[16];
+	/** The number of the spelling of each occurrence in {@link #spellings} */
+	private int[] words = new int[16];
+	/** The next occurrence with the same spelling ignoring case (or -1), set by {@link #link()} */
+	private int[] next;
+	/** The distinct spellings */
+	private final ArrayList<String> spellings = new ArrayList<>();
+	/** The numbers of the spellings in {@link #spellings}, dropped by {@link #link()} */
+	private HashMap<String, Integer> ids = new HashMap<>();
+	/** The number of occurrences */
+	private int size = 0;
+
+	/**
+	 * @param word a spelling
+	 * @return the number of the spelling in {@link #spellings}, added if it is new
+	 */
+	private int id(String word) {
+		Integer id = ids.putIfAbsent(word, spellings.size());
+		if(id != null) return id;
+		spellings.add(word);
+		return spellings.size() -1;
+	}
+
+	/**
+	 * Adds an occurrence behind all occurrences added before.
+	 * @param line the number of the line
+	 * @param column the position of the occurrence in its line
+	 * @param id the number of its spelling
+	 */
+	private void add(int line, int column, int id) {
+		if(ids == null) throw new IllegalStateException("The occurrences are linked already");
+		if(size == lines.length) {
+			lines = Arrays.copyOf(lines, size * 2);
+			columns = Arrays.copyOf(columns, size * 2);
+			words = Arrays.copyOf(words, size * 2);
+		}
+		lines[size] = line;
+		columns[size] = column;
+		words[size++] = id;
+	}
+
+	/**
+	 * Adds an occurrence behind all occurrences added before.
+	 * @param line the number of the line
+	 * @param column the position of the occurrence in its line
+	 * @param word the spelling of the occurrence
+	 */
+	void add(int line, int column, String word) {
+		add(line, column, id(word));
+	}
+
+	/**
+	 * Adds all occurrences of other behind the occurrences added before.
+	 * @param other occurrences found after the ones added before
+	 */
+	void addAll(Occurrences other) {
+		int[] map = new int[other.spellings.size()];
+		for(int i = 0; i < map.length; i++) map[i] = id(other.spellings.get(i));
+		for(int i = 0; i < other.size; i++) add(other.lines[i], other.columns[i], map[other.words[i]]);
+	}
+
+	/**
+	 * Links the occurrences with the same spelling ignoring case and frees the memory not
+	 * needed any more.
+	 */
+	void link() {
+		lines = Arrays.copyOf(lines, size);
+		columns = Arrays.copyOf(columns, size);
+		words = Arrays.copyOf(words, size);
+		spellings.trimToSize();
+		ids = null;
+
+		var groups = new HashMap<String, Integer>();
+		int[] group = new int[spellings.size()];
+		for(int id = 0; id < group.length; id++) {
+			Integer g = groups.putIfAbsent(spellings.get(id).toLowerCase(), groups.size());
+			group[id] = (g != null)? g : groups.size() -1;
+		}
+		int[] last = new int[groups.size()];
+		Arrays.fill(last, -1);
+		next = new int[size];
+		for(int i = 0; i < size; i++) {
+			final int g = group[words[i]];
+			next[i] = -1;
+			if(last[g] >= 0) next[last[g]] = i;
+			last[g] = i;
+		}
+	}
+
+	/**
+	 * @return the number of occurrences
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @param i the number of an occurrence
+	 * @return the number of its line
+	 */
+	int line(int i) {
+		return lines[java.util.Objects.checkIndex(i, size)];
+	}
+
+	/**
+	 * @param i the number of an occurrence
+	 * @return its position in its line
+	 */
+	int column(int i) {
+		return columns[java.util.Objects.checkIndex(i, size)];
+	}
+
+	/**
+	 * @param i the number of an occurrence
+	 * @return the position after its last character in its line
+	 */
+	int end(int i) {
+		return column(i) + word(i).length();
+	}
+
+	/**
+	 * @param i the number of an occurrence
+	 * @return its spelling
+	 */
+	String word(int i) {
+		return spellings.get(words[java.util.Objects.checkIndex(i, size)]);
+	}
+
+	/**
+	 * @param i the number of an occurrence
+	 * @return the number of the next occurrence with the same spelling ignoring case, -1
+	 * if there is none
+	 */
+	int next(int i) {
+		if(next == null) throw new IllegalStateException("The occurrences are not linked yet");
+		return next[java.util.Objects.checkIndex(i, size)];
+	}
+}
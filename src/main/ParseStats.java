@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+/**
+ * Statistics about the work done while a {@link main.Parser} searched a file for mistakes.
+ * @param lines the number of lines in the file
+ * @param reused the number of lines whose mistakes were known from the last search (see
+ * {@link main.LineCache}) and which were not checked again
+ * @param tokens the number of tokens checked
+ * @param lookups the number of tokens looked up in the dictionary, the verdicts for the
+ * other tokens were found in the {@link main.VerdictCache}
+ * @param mistakes the number of mistakes found
+ * @param nanos the time the search took in nanoseconds
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+public record ParseStats(int lines, int reused, long tokens, long lookups, int mistakes, long nanos) {
+
+	/**
+	 * @return the number of tokens whose verdict was found in the cache
+	 */
+	public long hits() {
+		return tokens - lookups;
+	}
+
+	/**
+	 * @return the share of tokens whose verdict was found in the cache (between 0 and 1)
+	 */
+	public double hitRate() {
+		return (tokens == 0)? 0 : (double) hits() / tokens;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d lines (%d reused), %d tokens, %d dictionary lookups (%.1f%% cache hits), %d mistakes in %.1f ms",
+				lines, reused, tokens, lookups, hitRate() * 100, mistakes, nanos / 1e6);
+	}
+}
@@ -17,18 +17,23 @@
 
 package main;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.regex.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RecursiveTask;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -38,7 +43,7 @@ import static java.util.Objects.requireNonNull;
  * @vers 0.2
  *
  */
-public class Parser implements Iterator<Mistake>{
+public class Parser implements Iterator<Mistake>, AutoCloseable{
 
 	/** File path to the file in need of correction */
 	public Path filepath;
@@ -46,11 +51,47 @@ public class Parser implements Iterator<Mistake>{
 	/** The class used to identify mistakes */
 	public Checker checker;
 
-	/** The file from {@link #filepath} broken up into lines */
-	public ArrayList<String> lines;
+	/** Files larger than this (in bytes) are memory-mapped instead of read into memory */
+	public static final long mappingthreshold = 64L << 20;
 
-	/** A list of the mistakes found in the order they occur in the text*/
-	private ArrayList<Mistake> mistakes;
+	/** The number of lines a single task checks for mistakes, set to {@value} */
+	private static final int chunklines = 2048;
+
+	/** The file from {@link #filepath} broken up into lines, together with the corrections made */
+	public PieceTable lines;
+
+	/**
+	 * The file from {@link #filepath} as it was read. Kept open, so the unchanged parts can
+	 * be copied from it even after the file was replaced by its corrected version.
+	 */
+	private FileChannel source;
+
+	/** The size of {@link #source} when it was read */
+	private long sourcesize;
+
+	/** Identifies {@link #source} in the file system (see {@link BasicFileAttributes#fileKey()}), may be null */
+	private Object sourcekey;
+
+	/** The time {@link #source} was last modified, when it was read or patched by {@link #writeToDisk(Path)} */
+	private FileTime sourcetime;
+
+	/** true if {@link #writeToDisk(Path)} replaced {@link #source} at {@link #filepath}, so nobody else can reach it */
+	private boolean detached = false;
+
+	/** true if {@link #lines} are memory-mapped from {@link #source} */
+	private boolean mapped;
+
+	/** true if {@link #source} was rewritten in place by {@link #writeToDisk(Path)} */
+	private boolean overwritten = false;
+
+	/** The SHA-256 hash of {@link #source} when it was read (see {@link Session#hash(FileChannel)}) */
+	private byte[] sourcehash;
+
+	/** true if {@link #writeToDisk(Path)} wrote the corrections to the file at {@link #filepath} */
+	private boolean written = false;
+
+	/** The mistakes found in the order they occur in the text, see {@link #mistake(int)} */
+	private Occurrences mistakes;
 
 	/** The total number of lines the file from {@link #filepath} contains */
 	private int lineno = 0;
@@ -61,104 +102,312 @@ public class Parser implements Iterator<Mistake>{
 	/** The line of the mistake the iterator currently is at*/
 	public int currentline = -1;
 
-	/** The {@link main.Parser#noPunctuation}-regex-pattern in String-form*/
-	private final String noPunctuationRegex 
-	= "(?!\\b'\\b)\\p{Punct}|\\p{Space}|\\p{Cntrl}|\\p{Digit}";
-
-	/**The regex used to tokenize the file from {@link #filepath} into words.
-	 * Divides happen on the POSIX character classes for whitespace-, control-, digit-
-	 * and punctuation-characters. The latter excludes apostrophes between two word
-	 * boundaries, eg. does not match the apostrophe in <pre>
-	 * 		- "wasn't"
-	 * 		- "I'd"
-	 * 		- "1's"
-	 * 		- "d'accord"
-	 * but matches (and tokenizes) all apostrophes in
-	 * 		- "Greeces' beaches" -> "Greeces", ("",) "beaches"
-	 * 		- "the boys' room" -> "the", "boys", ("",) "room"
-	 * 		- "the so called 'coolest dude'" -> "the", "so", "called, ("",) "coolest", "dude" (,"")
-	 * 		- "its'" -> "its"
-	 * </pre>
-	 * (//https://docs.oracle.com/javase/7/docs/api/java/util/regex/Pattern.html)
+	/** Statistics about the search for mistakes done by the constructor */
+	private ParseStats stats;
+
+	/**
+	 * The verdict caches not used by a chunk at the moment, only set while the constructor
+	 * runs. A chunk takes one (or creates one if none is left) and puts it back when it is
+	 * done, so there are no more caches than chunks checked at the same time and none of
+	 * them is kept by a thread of the pool after the search.
 	 */
-	private final Pattern noPunctuation = Pattern.compile(noPunctuationRegex); 
+	private ConcurrentLinkedQueue<VerdictCache> verdicts;
 
-	//https://docs.oracle.com/javase/7/docs/api/java/util/regex/Pattern.html
+	/** The mistakes found in the lines during the last search, only set while the constructor runs and not for mapped files */
+	private LineCache linecache;
+
+	/** The positions of the valid mistakes in {@link #mistakes} */
+	private final BitSet valid = new BitSet();
+
+	/** The spellings (in lowercase) ignored in this and the restored sessions */
+	private final HashSet<String> ignored = new HashSet<>();
+
+	/** true if the state of the last session was restored */
+	private boolean resumed;
 
 	/**
-	 * Constructor. Reads the text file and breaks it down into the individual words,
-	 * then checks them with {@link main.Checker} to identify unknown spellings.
+	 * Constructor. Reads the text file and breaks it down into the individual words with a
+	 * {@link main.Tokenizer}, then checks them with {@link main.Checker} to identify unknown
+	 * spellings. Strings are only created for the words that are mistakes. The lines are
+	 * split into chunks, which are checked in parallel on the common
+	 * {@link java.util.concurrent.ForkJoinPool}. The verdicts for the tokens seen are
+	 * remembered in {@link main.VerdictCache}s that are handed from chunk to chunk, so every
+	 * distinct spelling is only looked up once per cache. If a {@link main.Session} snapshot for the unchanged file
+	 * exists, the state of the last session is restored from it instead. Lines that did
+	 * not change since the last search are not checked again (see {@link main.LineCache}),
+	 * unless the file is memory-mapped.
 	 * @param path path to the file that is supposed to be checked for mistakes
 	 * @param checker the checker responsible for identifying mistakes
-	 * @throws IOException the IOException from {@link java.nio.file.Files#readAllLines(Path)}
+	 * @param mapped true if the file should be memory-mapped (see {@link main.MappedLines})
+	 * instead of being read into memory completely
+	 * @throws IOException if the file cannot be read or mapped
 	 * @throws IllegalArgumentException if the provided file contains no lines or if no mistakes have been found
 	 */
-	public Parser(Path path, Checker checker) throws IOException {
+	public Parser(Path path, Checker checker, boolean mapped) throws IOException {
 		requireNonNull(path); requireNonNull(checker);
-		lines = new ArrayList<>(Files.readAllLines(path));
+		source = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			sourcesize = source.size();
+			var attrs = Files.readAttributes(path, BasicFileAttributes.class);
+			sourcekey = attrs.fileKey();
+			sourcetime = attrs.lastModifiedTime();
+			sourcehash = Session.hash(source);
+			lines = new PieceTable(mapped? new MappedLines(path) : new ListLines(path));
+			this.mapped = mapped;
+		} catch(IOException e) {
+			source.close();
+			throw e;
+		}
 		if(lines.size() == 0) {
+			source.close();
 			throw new IllegalArgumentException("The file to check is empty.");
 		}
-		mistakes = new ArrayList<Mistake>(lines.size());
-		ArrayList<Mistake> tmp;
-		HashMap<String, Mistake> s2m = new HashMap<>(lines.size());
-
-		for(String line: lines) {
-			tmp = noPunctuation.splitAsStream(line)
-					.filter(s -> s.length() > 0)
-					.filter(s -> checker.isMistake(s))
-					.map(s -> new Mistake(this, lineno, s))
-					.map(m -> chainSameMistakes(m, s2m))
-					.collect(Collectors.toCollection(ArrayList::new));
-
-			mistakes.addAll(tmp);
-			lineno++;
-		}
-		if(mistakes.isEmpty()) {
+		this.checker = checker;
+		filepath = path;
+		lineno = lines.size();
+		resumed = resume();
+		if(!resumed) search();
+		if(mistakes.size() == 0) {
+			source.close();
 			throw new IllegalArgumentException("No mistakes found.");
 		}
-		mistakes.trimToSize();
-		filepath = path;
-		this.checker = checker;
+	}
+
+	/**
+	 * Searches all lines for mistakes. The lines are split into chunks, which are checked in
+	 * parallel.
+	 */
+	private void search() {
+		final long begin = System.nanoTime();
+		final String key = checker.fingerprint();
+		//The table for a file too large to be read into memory would not fit either
+		linecache = mapped? null : LineCache.load(filepath, key, lines.size());
+		verdicts = new ConcurrentLinkedQueue<>();
+		var tasks = new ArrayList<Chunk>();
+		for(int i = 0; i < lines.size(); i += chunklines) {
+			tasks.add(new Chunk(i, Math.min(i + chunklines, lines.size())));
+		}
 
+		//Forking outside of a pool submits the tasks to the common pool
+		for(Chunk task: tasks) task.fork();
+		mistakes = new Occurrences();
+		long tokens = 0, lookups = 0;
+		int checked = 0;
+		for(Chunk task: tasks) {
+			mistakes.addAll(task.join());
+			tokens += task.tokens;
+			lookups += task.lookups;
+			checked += task.checked;
+		}
+		verdicts = null;
+		if(linecache != null) {
+			try {
+				linecache.save(filepath, key, mistakes);
+			} catch(IOException e) {
+				//Only the next search will be slower
+			}
+		}
+		linecache = null;
+
+		mistakes.link();
+		valid.set(0, mistakes.size());
+		stats = new ParseStats(lines.size(), lines.size() - checked, tokens, lookups, mistakes.size(),
+				System.nanoTime() - begin);
+	}
+
+	/**
+	 * Restores the state of the last session from its {@link main.Session} snapshot, if
+	 * the file and the dictionaries did not change since then.
+	 * @return true if the session was restored, false if the file has to be searched for mistakes
+	 */
+	private boolean resume() {
+		Path snapshot = Session.path(filepath);
+		if(!Files.exists(snapshot)) return false;
+		final long begin = System.nanoTime();
+		Session session = Session.read(snapshot, sourcehash, checker.fingerprint());
+		if(session == null) return false;
+
+		mistakes = new Occurrences();
+		for(int i = 0; i < session.words.length; i++) {
+			mistakes.add(session.lines[i], session.columns[i], session.words[i]);
+		}
+		mistakes.link();
+		valid.or(session.valid);
+		for(String word: session.ignored) {
+			checker.add(word);
+			ignored.add(word);
+		}
+		for(PieceTable.Correction c: session.corrections) {
+			lines.replace(c.line(), c.start(), c.end(), c.text());
+		}
+		mistakeno = session.cursor -1; //the first call of hasNext() moves to the cursor
+		stats = new ParseStats(lines.size(), lines.size(), 0, 0, mistakes.size(), System.nanoTime() - begin);
+		return true;
+	}
+
+	/**
+	 * Saves the state of this session in a {@link main.Session} snapshot, so the next
+	 * session for the same file can continue where this one ended. The snapshot is tied to
+	 * the hash of the file computed when it was read. If no valid mistakes are left or if
+	 * the corrections were written to the file (so the positions of the mistakes no longer
+	 * match it), a previous snapshot is removed instead.
+	 * @return true if the snapshot was written or removed, false if an error occurred
+	 */
+	public boolean saveSession() {
+		Path snapshot = Session.path(filepath);
+		try {
+			boolean replaced = !Files.exists(filepath) || sourcekey == null
+					|| !sourcekey.equals(Files.readAttributes(filepath, BasicFileAttributes.class).fileKey());
+			if(replaced || written || valid.isEmpty()) {
+				Files.deleteIfExists(snapshot);
+			} else {
+				//A session that reached the end starts over to revisit the skipped mistakes
+				int cursor = (mistakeno >= mistakes.size())? 0 : Math.max(mistakeno, 0);
+				Session.write(snapshot, sourcehash, checker.fingerprint(), mistakes, valid,
+						cursor, ignored, lines.corrections());
+			}
+		} catch(IOException e) {
+			return false;
+		}
+		return true;
+	}
 
+	/**
+	 * @return true if the state of the last session was restored instead of searching the file
+	 */
+	public boolean resumed() {
+		return resumed;
+	}
+
+	/**
+	 * Constructor. Memory-maps the file if it is larger than {@link #mappingthreshold}.
+	 * @see main.Parser#Parser(Path, Checker, boolean)
+	 * @param path path to the file that is supposed to be checked for mistakes
+	 * @param checker the checker responsible for identifying mistakes
+	 * @throws IOException if the file cannot be read or mapped
+	 */
+	public Parser(Path path, Checker checker) throws IOException {
+		this(path, checker, Files.size(path) > mappingthreshold);
 	}
 
 	/**
 	 * Constructor. Creates a new Checker using the parameterless constructor of {@link main.Checker}
 	 * @see main.Parser#Parser(Path, Checker)
 	 * @param path path to the file that is supposed to be checked for mistakes
-	 * @throws IOException IOException the IOException from {@link java.nio.file.Files#readAllLines(Path)}
+	 * @throws IOException if the file cannot be read or mapped
 	 */
 	public Parser(Path path) throws IOException {
 		this(path, new Checker());
 	}
 
 	/**
-	 * If this particular spelling of a word not contained in the dictionary has been
-	 * encountered before they will be linked to each other to facilitate ignoring
-	 * this particular spelling faster (instead of scanning all mistakes again)
-	 * @param m the mistake to be chained
-	 * @param s2m a map that translates this spelling to the last mistake encountered with the same spelling
-	 * @return the same mistake given as a parameter (to allow method chaining)
+	 * Checks a range of lines for mistakes. The mistakes are not chained yet, since
+	 * mistakes with the same spelling may be found by other chunks.
 	 */
-	private Mistake chainSameMistakes(Mistake m, HashMap<String, Mistake> s2m) {
-		String s = m.wrongword.toLowerCase();
-		if(s2m.putIfAbsent(s, m) != null) {
-			s2m.get(s).next = m;
-			s2m.replace(s, m);
+	private final class Chunk extends RecursiveTask<Occurrences> {
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to;
+		/** The number of tokens checked and the number of them looked up in the dictionary */
+		long tokens, lookups;
+		/** The number of lines tokenized because the {@link Parser#linecache} did not know them */
+		int checked;
+
+		/** The positions of the mistakes in the line being checked */
+		private int[] spans = new int[16];
+
+		Chunk(int from, int to) {
+			this.from = from;
+			this.to = to;
 		}
 
+		@Override
+		protected Occurrences compute() {
+			var found = new Occurrences();
+			var tokenizer = new Tokenizer();
+			VerdictCache idle = verdicts.poll();
+			final VerdictCache cache = (idle != null)? idle : new VerdictCache(checker);
+			final long tokensBefore = cache.tokens(), lookupsBefore = cache.lookups();
+			final LineCache known = linecache;
+			lines.scan(from, to, (line, no) -> {
+				int[] positions = null;
+				if(known != null) {
+					final long hash = LineCache.hash(line);
+					known.record(no, hash);
+					positions = known.get(hash);
+				}
+				if(positions == null) {
+					positions = check(line, tokenizer, cache);
+					checked++;
+				}
+				for(int i = 0; i < positions.length; i += 2) {
+					found.add(no, positions[i], line.subSequence(positions[i], positions[i +1]).toString());
+				}
+			});
+			tokens = cache.tokens() - tokensBefore;
+			lookups = cache.lookups() - lookupsBefore;
+			verdicts.add(cache);
+			return found;
+		}
+
+		/**
+		 * Breaks a line down into tokens and checks them.
+		 * @param line the line to check
+		 * @param tokenizer the tokenizer to use
+		 * @param cache the verdicts for the tokens seen so far
+		 * @return the start and end of every mistake in the line
+		 */
+		private int[] check(CharSequence line, Tokenizer tokenizer, VerdictCache cache) {
+			int n = 0;
+			tokenizer.reset(line);
+			while(tokenizer.next()) {
+				final int start = tokenizer.start(), end = tokenizer.end();
+				if(cache.isMistake(line, start, end)) {
+					if(n == spans.length) spans = Arrays.copyOf(spans, n * 2);
+					spans[n++] = start;
+					spans[n++] = end;
+				}
+			}
+			return (n == 0)? LineCache.NONE : Arrays.copyOf(spans, n);
+		}
+	}
+
+	/**
+	 * Creates the {@link main.Mistake} for an occurrence in {@link #mistakes}. Mistakes
+	 * are not kept, every call creates a new one.
+	 * @param i the number of the mistake
+	 * @return the mistake
+	 */
+	Mistake mistake(int i) {
+		Mistake m = new Mistake(this, mistakes.line(i), mistakes.column(i), mistakes.word(i));
+		m.index = i;
 		return m;
 	}
 
+	/**
+	 * @param m a mistake found by this parser
+	 * @return the next mistake with the same spelling (ignoring case), null if there is none
+	 */
+	Mistake sameSpelling(Mistake m) {
+		int next = mistakes.next(m.index);
+		return (next < 0)? null : mistake(next);
+	}
+
+	/**
+	 * @param m a mistake found by this parser
+	 * @return false if the mistake was replaced or its spelling ignored
+	 */
+	boolean isValid(Mistake m) {
+		return valid.get(m.index);
+	}
+
 	/**
 	 * @return Returns true if there is a valid mistake still ahead of the current position of the parser, false otherwise.
 	 */
 	@Override
 	public boolean hasNext() {
-		mistakeno++;
-		while(mistakeno < mistakes.size() && !mistakes.get(mistakeno).valid) mistakeno++;
+		mistakeno = valid.nextSetBit(mistakeno +1);
+		if(mistakeno < 0) mistakeno = mistakes.size();
 		return mistakeno < mistakes.size();
 	}
 
@@ -167,7 +416,7 @@ public class Parser implements Iterator<Mistake>{
 	 */
 	@Override
 	public Mistake next() {
-		return mistakes.get(mistakeno);
+		return mistake(mistakeno);
 	}
 
 	/**
@@ -176,7 +425,7 @@ public class Parser implements Iterator<Mistake>{
 	 */
 	public boolean hasPrevious() {
 		mistakeno--;
-		while(mistakeno > 0 && !mistakes.get(mistakeno).valid) mistakeno--;
+		if(mistakeno > 0) mistakeno = Math.max(valid.previousSetBit(mistakeno), 0);
 		return mistakeno > 0;
 	}
 
@@ -184,29 +433,48 @@ public class Parser implements Iterator<Mistake>{
 	 * @return the next mistake behind of the current position of the parser
 	 */
 	public Mistake previous() {
-		return mistakes.get(mistakeno--);
+		return mistake(mistakeno--);
+	}
+
+	/**
+	 * @return statistics about the search for mistakes done when the parser was created
+	 */
+	public ParseStats stats() {
+		return stats;
+	}
+
+	/**
+	 * Collects the valid mistakes starting at the current position of the parser, without
+	 * moving it.
+	 * @param n the maximum number of mistakes to collect
+	 * @return up to n valid mistakes in the order they occur in the text
+	 */
+	public List<Mistake> upcoming(int n) {
+		var res = new ArrayList<Mistake>(n);
+		for(int i = valid.nextSetBit(Math.max(mistakeno, 0)); i >= 0 && res.size() < n; i = valid.nextSetBit(i +1)) {
+			res.add(mistake(i));
+		}
+		return res;
 	}
 
 	/**
 	 * Replaces the spelling of the mistake with a replacement in the in-memory file
-	 * representation.
+	 * representation. Only the occurrence the mistake points to is replaced, other
+	 * occurrences in the same line are left untouched.
 	 * @param m the mistake to be replaced
 	 * @param replacement the corrected spelling of the mistake
-	 * @return null if the mistake was found in the specified line, the line if not
-	 * @throws IllegalArgumentException if the line referenced in the mistake does not contain the mistake
+	 * @return null if the mistake was found at its position, the current line if not
 	 */
 	public String replace(Mistake m, String replacement) {
 		requireNonNull(m); requireNonNull(replacement);
-		if(!m.valid) return null;
-		String line = lines.get(m.lineno), word = m.wrongword;
+		if(!m.isValid()) return null;
 		if(m.uppercase) replacement.toUpperCase();
 
-		if(line.contains(word)) {
-			lines.set(m.lineno, line.replace(word, replacement));
-			m.valid = false;
+		if(lines.replace(m.lineno, m.column, m.wrongword, replacement)) {
+			invalidate(m);
 			return null;
 		}else {
-			return line;
+			return lines.get(m.lineno);
 		}
 	}
 
@@ -222,20 +490,13 @@ public class Parser implements Iterator<Mistake>{
 		Mistake current = m;
 		var failedList = new ArrayList<String>();
 		String notFoundIn = null;
-		int lastLine = -1;
 
 		do {
-			//The same mistake can occur multiple times in the same line, 
-			//but will be corrected the first time it is encountered
-			if(current.lineno != lastLine) { 					
-				notFoundIn = this.replace(current, replacement);
-				if(notFoundIn != null) {
-					failedList.add("" + current.lineno+1 + ": " + notFoundIn);
-				}
+			notFoundIn = this.replace(current, replacement);
+			if(notFoundIn != null) {
+				failedList.add("" + current.lineno+1 + ": " + notFoundIn);
 			}
-
-			lastLine = current.lineno;
-			current = current.next;
+			current = current.next();
 
 		}while(current != null);
 
@@ -271,15 +532,83 @@ public class Parser implements Iterator<Mistake>{
 
 	/**
 	 * Writes the transformed version of the corrected file to the location specified in path.
+	 * If path is the original file and every correction has the same length (in bytes) as
+	 * the text it replaces, only the corrections are written over the file. Otherwise the
+	 * new version is assembled in a temporary file, copying the unchanged parts directly
+	 * from the original file (see {@link PieceTable#write(FileChannel, java.nio.channels.WritableByteChannel)}),
+	 * and then atomically replaces path. Line terminators are kept as they were. If the
+	 * original file was modified by someone else in the meantime (see {@link #sourceUnchanged()}),
+	 * the lines in memory are written instead, each followed by {@link System#lineSeparator()}.
+	 * If the lines are memory-mapped, they changed together with the file, so nothing is
+	 * written then.
+	 * <p>
+	 * A symbolic link is followed, so the file it points to is replaced and the link is kept.
+	 * A file with several hard links cannot be replaced without breaking them, so the new
+	 * version is copied over it instead, which is not atomic. This is refused if the lines
+	 * are memory-mapped from that very file, because the mapping would change underneath them.
 	 * @param path the location where the transformed version is supposed to be saved
 	 * @return true if the file was successfully written
 	 */
 	public boolean writeToDisk(Path path) {
 		requireNonNull(path);
-		try(Writer w = new BufferedWriter(new FileWriter(path.toFile()))){
-			for(String s: lines) {
-				w.write(s);
-				w.write(System.lineSeparator());
+		try {
+			Path target = Files.exists(path)? path.toRealPath() : path.toAbsolutePath();
+			boolean unchanged = sourceUnchanged();
+			if(!unchanged && mapped) return false;
+			Object key = Files.exists(target)? Files.readAttributes(target, BasicFileAttributes.class).fileKey() : null;
+			boolean same = sourcekey != null && sourcekey.equals(key);
+			if(unchanged && same) {
+				if(!lines.modified()) return true;
+				if(lines.patchable()) {
+					try(FileChannel file = FileChannel.open(target, StandardOpenOption.WRITE)){
+						written = true;
+						lines.patch(file);
+						file.force(true);
+					}
+					//The patched bytes are covered by the corrections, the rest can still be copied
+					sourcetime = Files.getLastModifiedTime(target);
+					return true;
+				}
+			}
+			boolean linked = Files.exists(target) && links(target) > 1;
+			if(linked && same && mapped) return false;
+
+			//Even a failed attempt may have changed the file, so the mistakes no longer match it
+			if(Files.exists(target) && Files.exists(filepath) && Files.isSameFile(target, filepath)) written = true;
+			Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+			try {
+				if(Files.exists(target)) {
+					try {
+						Files.setPosixFilePermissions(tmp, Files.getPosixFilePermissions(target));
+					} catch(UnsupportedOperationException e) {
+						//Not a POSIX file system, the temporary file keeps its default permissions
+					}
+				}
+				if(unchanged) {
+					try(FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)){
+						lines.write(source, out);
+						out.force(true);
+					}
+				} else {
+					try(Writer w = Files.newBufferedWriter(tmp)){
+						lines.write(w, System.lineSeparator());
+					}
+				}
+				if(linked) {
+					try(FileChannel in = FileChannel.open(tmp, StandardOpenOption.READ);
+							FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE)){
+						long size = in.size();
+						for(long pos = 0; pos < size;) pos += out.transferFrom(in, pos, size - pos);
+						out.truncate(size);
+						out.force(true);
+					}
+					if(same) overwritten = true;
+				} else {
+					Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+					if(same) detached = true;
+				}
+			} finally {
+				Files.deleteIfExists(tmp);
 			}
 		}catch(IOException e) {
 			return false;
@@ -287,6 +616,46 @@ public class Parser implements Iterator<Mistake>{
 		return true;
 	}
 
+	/**
+	 * Checks whether {@link #source} still has the content it had when it was read (or when
+	 * {@link #writeToDisk(Path)} patched it). Besides the size, the file at {@link #filepath}
+	 * has to be the same file and must not have been modified since. Once the file was
+	 * replaced by its corrected version, the original can no longer be reached by anyone
+	 * else and only the size is compared.
+	 * @return true if the unchanged parts can be copied from {@link #source}
+	 * @throws IOException if the attributes of the file cannot be read
+	 */
+	private boolean sourceUnchanged() throws IOException {
+		if(overwritten || source.size() != sourcesize) return false;
+		if(detached) return true;
+		if(!Files.exists(filepath)) return false;
+		var attrs = Files.readAttributes(filepath, BasicFileAttributes.class);
+		return (sourcekey == null || sourcekey.equals(attrs.fileKey())) && sourcetime.equals(attrs.lastModifiedTime());
+	}
+
+	/**
+	 * @param file an existing file
+	 * @return the number of hard links to file, 1 if the file system does not tell
+	 * @throws IOException if the attributes of file cannot be read
+	 */
+	private static int links(Path file) throws IOException {
+		try {
+			return (Integer) Files.getAttribute(file, "unix:nlink");
+		} catch(UnsupportedOperationException | IllegalArgumentException e) {
+			return 1;
+		}
+	}
+
+	/**
+	 * Closes the original file kept open for {@link #writeToDisk(Path)}. The parser cannot
+	 * write the corrected file afterwards.
+	 * @throws IOException if the file cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		source.close();
+	}
+
 	/**
 	 * Adds this mistake to the temporary dictionary and invalidates all future mistakes
 	 * with the same spelling.
@@ -295,12 +664,22 @@ public class Parser implements Iterator<Mistake>{
 	public void ignore(Mistake m) {
 		requireNonNull(m);
 		checker.add(m.wrongword);
+		ignored.add(m.wrongword.toLowerCase());
 		m.invalidateAll();
 
 	}
 
 	/**
-	 * Moves the iterator to the next mistake starting from the specified line.
+	 * Marks a mistake as invalid, i.e. it is skipped when moving the parser.
+	 * @param m the mistake to invalidate
+	 */
+	void invalidate(Mistake m) {
+		valid.clear(m.index);
+	}
+
+	/**
+	 * Moves the iterator to the next valid mistake starting from the specified line. If
+	 * there is none, it is moved to the first mistake starting from the line.
 	 * @param l the line number the iterator is supposed to be moved to
 	 */
 	public void toLine(int l) {
@@ -310,6 +689,8 @@ public class Parser implements Iterator<Mistake>{
 			return;
 		}
 		mistakeno = binSearchMistakes(l);	
+		int next = valid.nextSetBit(mistakeno);
+		if(next >= 0) mistakeno = next;
 	}
 
 	/**
@@ -324,7 +705,7 @@ public class Parser implements Iterator<Mistake>{
 		int i = 0;
 		while(L < R) {
 			m = Math.floorDiv(R+L, 2);
-			if(mistakes.get(m).lineno < l) {
+			if(mistakes.line(m) < l) {
 				L = m+1;
 			} else {
 				R = m;
@@ -0,0 +1,346 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.function.ObjIntConsumer;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The corrected version of a text. The original {@link main.Lines} are never modified;
+ * every correction is stored as a piece replacing a range of an original line, indexed by
+ * the position of that range in the original text. Since the positions refer to the
+ * original text, they stay valid no matter how many corrections were made before, so a
+ * correction never has to be shifted or copied. The corrected text consists of the
+ * original text between the replaced ranges and the replacements.
+ * <p>
+ * Storing a correction takes O(log n) for n corrections, plus finding its range in the
+ * original line, which {@link Lines#matches(int, int, String)} and {@link Lines#length(int)}
+ * do without decoding the line. Reading a line only assembles
+ * that line and writing the text streams the pieces line by line. Since the original
+ * {@link Lines#position(int, int) positions} of the corrections in the file are known,
+ * the corrected file can also be produced by copying the unchanged bytes of the original
+ * file and writing only the corrections.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+public class PieceTable implements Lines {
+
+	/** A replacement for the original text from a start position up to end in the same line */
+	private record Piece(int end, String text) {}
+
+	/**
+	 * A correction of the original text.
+	 * @param line the number of the corrected line
+	 * @param start the position of the first replaced character in the original line
+	 * @param end the position after the last replaced character in the original line
+	 * @param text the text replacing the range
+	 */
+	public record Correction(int line, int start, int end, String text) {}
+
+	/** The original text */
+	private final Lines original;
+	/** The replacements, keyed by the line and the column they start at (see {@link #key(int, int)}) */
+	private final TreeMap<Long, Piece> pieces = new TreeMap<>();
+
+	/**
+	 * Constructor.
+	 * @param original the original text
+	 */
+	PieceTable(Lines original) {
+		this.original = requireNonNull(original);
+	}
+
+	/**
+	 * @param line the number of a line
+	 * @param column a position in the line
+	 * @return the key the pieces starting at column in line are stored under
+	 */
+	private static long key(int line, int column) {
+		return ((long) line << 32) | column;
+	}
+
+	/**
+	 * @param line the number of a line
+	 * @return the pieces replacing parts of line, in order
+	 */
+	private NavigableMap<Long, Piece> piecesOf(int line) {
+		return pieces.subMap(key(line, 0), true, key(line +1, 0), false);
+	}
+
+	/**
+	 * Replaces the original text in [start, end) of a line. The range must not overlap a
+	 * range replaced before.
+	 * @param line the number of the line (zero-based)
+	 * @param start the position of the first replaced character in the original line
+	 * @param end the position after the last replaced character in the original line
+	 * @param replacement the text replacing the range
+	 * @return true if the range was replaced, false if it overlaps a range replaced before
+	 * @throws IndexOutOfBoundsException if the line or the range do not exist
+	 */
+	public boolean replace(int line, int start, int end, String replacement) {
+		requireNonNull(replacement);
+		java.util.Objects.checkIndex(line, original.size());
+		java.util.Objects.checkFromToIndex(start, end, original.length(line));
+		return put(line, start, end, replacement);
+	}
+
+	/**
+	 * Replaces word at a position of a line, if the original line contains it there. The
+	 * range of word must not overlap a range replaced before.
+	 * @param line the number of the line (zero-based)
+	 * @param start the position of the first character of word in the original line
+	 * @param word the original text to replace
+	 * @param replacement the text replacing word
+	 * @return true if word was replaced, false if the original line does not contain word
+	 * at start or if it overlaps a range replaced before
+	 * @throws IndexOutOfBoundsException if the line does not exist
+	 */
+	public boolean replace(int line, int start, String word, String replacement) {
+		requireNonNull(word); requireNonNull(replacement);
+		java.util.Objects.checkIndex(line, original.size());
+		if(!original.matches(line, start, word)) return false;
+		return put(line, start, start + word.length(), replacement);
+	}
+
+	/**
+	 * Stores a replacement for a valid range of a line unless it overlaps a range replaced
+	 * before.
+	 * @param line the number of the line
+	 * @param start the position of the first replaced character in the original line
+	 * @param end the position after the last replaced character in the original line
+	 * @param replacement the text replacing the range
+	 * @return true if the range was replaced, false if it overlaps a range replaced before
+	 */
+	private boolean put(int line, int start, int end, String replacement) {
+		final long key = key(line, start);
+
+		Map.Entry<Long, Piece> before = pieces.floorEntry(key);
+		if(before != null && (before.getKey() >>> 32) == line && before.getValue().end() > start) return false;
+		if(start == end && before != null && before.getKey() == key) return false;
+		Map.Entry<Long, Piece> after = pieces.higherEntry(key);
+		if(after != null && (after.getKey() >>> 32) == line && (int) (long) after.getKey() < end) return false;
+
+		pieces.put(key, new Piece(end, replacement));
+		return true;
+	}
+
+	/**
+	 * @return all corrections in the order of their position in the text
+	 */
+	public List<Correction> corrections() {
+		var res = new ArrayList<Correction>(pieces.size());
+		for(Map.Entry<Long, Piece> e: pieces.entrySet()) {
+			res.add(new Correction((int) (e.getKey() >>> 32), (int) (long) e.getKey(),
+					e.getValue().end(), e.getValue().text()));
+		}
+		return res;
+	}
+
+	/**
+	 * @return true if any part of the text was replaced
+	 */
+	public boolean modified() {
+		return !pieces.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return original.size();
+	}
+
+	/**
+	 * @return the line with all corrections applied
+	 */
+	@Override
+	public String get(int i) {
+		String line = original.get(i);
+		NavigableMap<Long, Piece> corrections = piecesOf(i);
+		if(corrections.isEmpty()) return line;
+		var sb = new StringBuilder(line.length() + 16);
+		int pos = 0;
+		for(Map.Entry<Long, Piece> e: corrections.entrySet()) {
+			int start = (int) (long) e.getKey();
+			sb.append(line, pos, start).append(e.getValue().text());
+			pos = e.getValue().end();
+		}
+		return sb.append(line, pos, line.length()).toString();
+	}
+
+	/**
+	 * @return the position of the character in the original file, columns refer to the original line
+	 */
+	@Override
+	public long position(int line, int column) {
+		return original.position(line, column);
+	}
+
+	/**
+	 * Passes the original lines in [from, to) to visitor, see {@link Lines#scan(int, int, ObjIntConsumer)}.
+	 */
+	@Override
+	public void scan(int from, int to, ObjIntConsumer<CharSequence> visitor) {
+		original.scan(from, to, visitor);
+	}
+
+	/**
+	 * Writes the corrected text, each line followed by lineSeparator. The lines are
+	 * written one after another, unchanged lines and the unchanged parts of corrected
+	 * lines directly from the original text.
+	 * @param w receives the text
+	 * @param lineSeparator the text written after each line
+	 * @throws IOException if w throws an IOException
+	 */
+	public void write(Writer w, String lineSeparator) throws IOException {
+		requireNonNull(w); requireNonNull(lineSeparator);
+		try {
+			original.scan(0, original.size(), (line, no) -> {
+				try {
+					int pos = 0;
+					for(Map.Entry<Long, Piece> e: piecesOf(no).entrySet()) {
+						int start = (int) (long) e.getKey();
+						write(w, line, pos, start);
+						w.write(e.getValue().text());
+						pos = e.getValue().end();
+					}
+					write(w, line, pos, line.length());
+					w.write(lineSeparator);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * @return true if every correction is encoded in as many bytes as the text it replaces,
+	 * so the corrections can be written over the original file with {@link #patch(FileChannel)}
+	 */
+	public boolean patchable() {
+		for(Map.Entry<Long, Piece> e: pieces.entrySet()) {
+			int line = (int) (e.getKey() >>> 32), start = (int) (long) e.getKey();
+			long len = position(line, e.getValue().end()) - position(line, start);
+			if(len != e.getValue().text().getBytes(StandardCharsets.UTF_8).length) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the corrections over their original bytes. Only valid if {@link #patchable()}.
+	 * @param file a channel to the original file, opened for writing
+	 * @throws IOException if file cannot be written
+	 */
+	public void patch(FileChannel file) throws IOException {
+		for(Map.Entry<Long, Piece> e: pieces.entrySet()) {
+			long pos = position((int) (e.getKey() >>> 32), (int) (long) e.getKey());
+			ByteBuffer bytes = ByteBuffer.wrap(e.getValue().text().getBytes(StandardCharsets.UTF_8));
+			while(bytes.hasRemaining()) pos += file.write(bytes, pos);
+		}
+	}
+
+	/**
+	 * Writes the corrected file. The bytes between the corrections are transferred directly
+	 * from the original file (see {@link FileChannel#transferTo(long, long, WritableByteChannel)}),
+	 * so they are neither decoded nor encoded and keep their original line terminators.
+	 * @param original a channel to the original file
+	 * @param out receives the corrected file
+	 * @throws IOException if the original file is shorter than expected or cannot be read
+	 * or if out cannot be written
+	 */
+	public void write(FileChannel original, WritableByteChannel out) throws IOException {
+		long pos = 0;
+		for(Map.Entry<Long, Piece> e: pieces.entrySet()) {
+			int line = (int) (e.getKey() >>> 32), start = (int) (long) e.getKey();
+			long from = position(line, start);
+			transfer(original, pos, from, out);
+			ByteBuffer bytes = ByteBuffer.wrap(e.getValue().text().getBytes(StandardCharsets.UTF_8));
+			while(bytes.hasRemaining()) out.write(bytes);
+			pos = position(line, e.getValue().end());
+		}
+		transfer(original, pos, original.size(), out);
+	}
+
+	/**
+	 * Transfers the bytes in [from, to) of in to out.
+	 * @param in the channel to read from
+	 * @param from the position of the first byte
+	 * @param to the position after the last byte
+	 * @param out the channel to write to
+	 * @throws IOException if in ends before to or if a channel throws an IOException
+	 */
+	private static void transfer(FileChannel in, long from, long to, WritableByteChannel out) throws IOException {
+		while(from < to) {
+			long n = in.transferTo(from, to - from, out);
+			if(n <= 0 && from >= in.size()) throw new IOException("The file ended unexpectedly");
+			from += n;
+		}
+	}
+
+	/**
+	 * Writes the characters in [from, to) of s. Strings are written without copying them first.
+	 * @param w receives the characters
+	 * @param s the characters to write from
+	 * @param from the position of the first character to write
+	 * @param to the position after the last character to write
+	 * @throws IOException if w throws an IOException
+	 */
+	private static void write(Writer w, CharSequence s, int from, int to) throws IOException {
+		if(s instanceof String str) {
+			w.write(str, from, to - from);
+		} else {
+			w.append(s, from, to);
+		}
+	}
+
+	/**
+	 * Iterates over the lines with all corrections applied.
+	 */
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+			int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < size();
+			}
+
+			@Override
+			public String next() {
+				if(!hasNext()) throw new NoSuchElementException();
+				return get(i++);
+			}
+		};
+	}
+}
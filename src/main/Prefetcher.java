@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Computes the suggestions for upcoming mistakes on a background thread while the user
+ * is still deciding what to do with the current one. The suggestions end up in the cache
+ * of {@link main.Checker#suggest(String)}, so {@link main.Mistake#getSuggestions()} finds
+ * them there. If the user asks for suggestions that are still being computed, the
+ * checker waits for them instead of computing them again. Only one batch of mistakes is
+ * worked on at a time: a new request cancels the previous one.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+class Prefetcher implements AutoCloseable {
+
+	/** The checker computing the suggestions */
+	private final Checker checker;
+	/** The single background thread */
+	private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "TypoTattler-prefetch");
+		t.setDaemon(true);
+		return t;
+	});
+	/** The batch of mistakes currently worked on */
+	private Future<?> task = null;
+
+	/**
+	 * Constructor.
+	 * @param checker the checker computing the suggestions
+	 */
+	Prefetcher(Checker checker) {
+		this.checker = requireNonNull(checker);
+	}
+
+	/**
+	 * Starts computing the suggestions for mistakes in the background. The work on the
+	 * mistakes requested before is cancelled.
+	 * @param mistakes the mistakes in the order their suggestions should be computed in
+	 */
+	void prefetch(List<Mistake> mistakes) {
+		requireNonNull(mistakes);
+		cancel();
+		task = worker.submit(() -> {
+			for(Mistake m: mistakes) {
+				if(Thread.currentThread().isInterrupted()) return;
+				//Read without synchronization: a stale value only leads to a superfluous lookup
+				if(m.isValid() && m.suggestions == null) checker.suggest(m.wrongword);
+			}
+		});
+	}
+
+	/**
+	 * Cancels the work on the mistakes requested last. A suggestion that is currently
+	 * being computed is still finished (and cached), so a caller of
+	 * {@link Checker#suggest(String)} waiting for it gets it.
+	 */
+	void cancel() {
+		if(task != null) task.cancel(true);
+		task = null;
+	}
+
+	/**
+	 * Cancels the remaining work and stops the background thread.
+	 */
+	@Override
+	public void close() {
+		cancel();
+		worker.shutdownNow();
+	}
+}
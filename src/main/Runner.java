@@ -18,6 +18,10 @@
 package main;
 
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Runner for the TypoTattler. Entry point for the program.
@@ -32,6 +36,8 @@ public class Runner {
 			"""
 					SYNOPSIS
 							typotattler FILE [DICTIONARY]
+							typotattler --batch [--suggest] [--dict DICTIONARY] [--threads N] PATH...
+							typotattler --daemon [--dict DICTIONARY | stop]
 
 					DESCRIPTION
 							TypoTattler disassembles a textfile into its individual words and checks them against the default wordlist (or a dictionary if provided).
@@ -40,6 +46,17 @@ public class Runner {
 							to use as the wordlist. If those are not found, the program will use the embedded dictionary ('american-english-huge'). Note that the
 							program may have trouble finding the user dictionaries when being run from inside an IDE.
 
+							With --batch no questions are asked. Every PATH may be a file, a directory (all files below it are checked) or a glob pattern
+							(e.g. 'docs/**.md', quoted to keep the shell from expanding it). Every mistake is written to standard output as a line of JSON:
+								{"file":"docs/intro.md","line":3,"column":17,"word":"teh"}
+							Lines and columns start at 1. With --suggest every line additionally contains a list of "suggestions". The files are checked
+							concurrently on N threads (default: the number of processors). The exit status is 0 if no mistakes were found, 1 if there
+							were mistakes and 2 if a file could not be checked.
+
+							With --daemon TypoTattler keeps the dictionary loaded and answers requests on the Unix domain socket
+							'$XDG_RUNTIME_DIR/TypoTattler/daemon.sock' until it is stopped with '--daemon stop'. While a daemon is running, --batch lets it
+							check the files (unless --dict is given). See the README for the protocol used on the socket.
+
 					USAGE
 							n - Display the next valid mistake and (if not already shown) the full line the mistake belongs to.
 							p - Display the previous valid mistake and (if not already shown) the full line the mistake belongs to.
@@ -64,6 +81,14 @@ public class Runner {
 	 */
 	public static void main(String[] args) {
 
+		if(args.length > 0 && args[0].equals("--batch")) {
+			System.exit(batch(Arrays.asList(args).subList(1, args.length)));
+		}
+
+		if(args.length > 0 && args[0].equals("--daemon")) {
+			System.exit(daemon(Arrays.asList(args).subList(1, args.length)));
+		}
+
 		if(args.length > 2) {
 			System.err.print("Too many arguments");
 			return;
@@ -94,4 +119,90 @@ public class Runner {
 		System.out.println("Exiting...");
 	}
 
+	/**
+	 * Starts or stops the daemon.
+	 * @param args the command line arguments following '--daemon'
+	 * @return the exit status of the program
+	 */
+	private static int daemon(List<String> args) {
+		try {
+			if(args.equals(List.of("stop"))) {
+				try(Daemon.Client client = Daemon.Client.connect()){
+					if(client == null) throw new IOException("No daemon is running");
+					client.request("STOP");
+				}
+				return 0;
+			}
+
+			String dict = null;
+			if(args.size() == 2 && args.get(0).equals("--dict")) {
+				dict = args.get(1);
+			} else if(!args.isEmpty()) {
+				throw new IllegalArgumentException("Unexpected arguments " + args);
+			}
+			if(Daemon.running()) throw new IOException("A daemon is already running");
+			try(Checker checker = TypoTattler.initChecker(dict)){
+				new Daemon(checker).serve();
+			}
+			return 0;
+		} catch(IOException | IllegalArgumentException e) {
+			System.err.println("Error: " + e.getMessage());
+			return 2;
+		}
+	}
+
+	/**
+	 * Parses the options of the batch mode and runs a {@link main.Batch}.
+	 * @param args the command line arguments following '--batch'
+	 * @return the exit status of the program
+	 */
+	private static int batch(List<String> args) {
+		boolean suggest = false;
+		String dict = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int i = 0;
+		try {
+			for(; i < args.size() && args.get(i).startsWith("--"); i++) {
+				switch(args.get(i)) {
+				case "--suggest": suggest = true; break;
+				case "--dict": dict = args.get(++i); break;
+				case "--threads": threads = Integer.parseInt(args.get(++i)); break;
+				default: throw new IllegalArgumentException("Unknown option '" + args.get(i) + "'");
+				}
+			}
+			if(threads < 1) throw new IllegalArgumentException("The number of threads must be positive");
+			if(i == args.size()) throw new IllegalArgumentException("No files to check");
+
+			List<Path> files = Batch.expand(args.subList(i, args.size()));
+			int status = 0;
+			//A daemon uses its own dictionary, so it is only asked if no other was requested
+			if(dict == null) {
+				Daemon.Client.Outcome outcome = null;
+				try(Daemon.Client client = Daemon.Client.connect()){
+					if(client != null) outcome = client.check(files, suggest, threads, System.out);
+				} catch(IOException e) {
+					//Only closing the connection failed, the reports are written already
+				}
+				if(outcome != null) {
+					if(outcome.unchecked().isEmpty()) return outcome.status();
+					System.err.println("Error: Lost the connection to the daemon, checking the remaining files without it");
+					files = outcome.unchecked();
+					status = outcome.status();
+				}
+			}
+			try(Checker checker = TypoTattler.initChecker(dict)){
+				return Math.max(status, new Batch(checker, suggest, System.out).run(files, threads));
+			}
+		} catch(IndexOutOfBoundsException e) {
+			System.err.println("Error: Missing value for option '" + args.get(i -1) + "'");
+		} catch(NoSuchFileException e) {
+			System.err.println("Error: No such file, directory or pattern: '" + e.getMessage() + "'");
+		} catch(IOException | IllegalArgumentException e) {
+			System.err.println("Error: " + e.getMessage());
+		} catch(InterruptedException e) {
+			System.err.println("Error: Interrupted");
+		}
+		return 2;
+	}
+
 }
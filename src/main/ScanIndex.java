@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Compares the query with every word of the dictionary whose length differs by at most
+ * one from the length of the query. The words are kept in buckets by their length and
+ * the buckets are split into chunks, which are compared in parallel on the common
+ * {@link java.util.concurrent.ForkJoinPool}. Every chunk keeps only its best matches,
+ * which are merged afterwards.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+class ScanIndex implements SuggestionEngine {
+
+	/** The number of words a single task compares with the query, set to {@value} */
+	private static final int chunksize = 2048;
+
+	/** The words of the dictionary, the words in a bucket all have the length of its index */
+	private final ArrayList<ArrayList<String>> buckets = new ArrayList<>();
+
+	@Override
+	public void add(String word) {
+		requireNonNull(word);
+		while(buckets.size() <= word.length()) buckets.add(new ArrayList<>());
+		buckets.get(word.length()).add(word);
+	}
+
+	/**
+	 * Compares a range of words from one bucket with the query and keeps the best of them.
+	 */
+	private static final class Chunk extends RecursiveTask<Match[]> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<String> words;
+		private final EditDistance metric;
+		private final int limit;
+
+		Chunk(List<String> words, EditDistance metric, int limit) {
+			this.words = words;
+			this.metric = metric;
+			this.limit = limit;
+		}
+
+		@Override
+		protected Match[] compute() {
+			Match[] best = new Match[limit];
+			int n = 0;
+			for(String word: words) {
+				int dist = metric.distance(word);
+				if(dist > metric.max()) continue;
+				n = insert(best, n, new Match(word, dist));
+			}
+			return Arrays.copyOf(best, n);
+		}
+	}
+
+	/**
+	 * Inserts a match into an array of the best matches sorted by {@link #order}.
+	 * @param best the sorted array of the best matches
+	 * @param n the number of matches in best
+	 * @param match the match to insert
+	 * @return the new number of matches in best
+	 */
+	private static int insert(Match[] best, int n, Match match) {
+		int i = n;
+		while(i > 0 && order.compare(best[i -1], match) > 0) i--;
+		if(i == best.length) return n;
+		int moved = Math.min(n, best.length -1) - i;
+		System.arraycopy(best, i, best, i +1, moved);
+		best[i] = match;
+		return Math.min(n +1, best.length);
+	}
+
+	/**
+	 * Compares the query with all words whose length differs by at most one from the length
+	 * of query and returns the best limit of them.
+	 */
+	@Override
+	public List<Match> search(String query, int radius, int limit) {
+		requireNonNull(query);
+		var metric = new EditDistance(query, radius);
+		var tasks = new ArrayList<Chunk>();
+		for(int len = Math.max(0, query.length() -1); len <= query.length() +1 && len < buckets.size(); len++) {
+			List<String> bucket = buckets.get(len);
+			for(int i = 0; i < bucket.size(); i += chunksize) {
+				tasks.add(new Chunk(bucket.subList(i, Math.min(i + chunksize, bucket.size())), metric, limit));
+			}
+		}
+
+		//Forking outside of a pool submits the tasks to the common pool
+		for(Chunk task: tasks) task.fork();
+		Match[] best = new Match[limit];
+		int n = 0;
+		for(Chunk task: tasks) {
+			for(Match m: task.join()) n = insert(best, n, m);
+		}
+		return Arrays.asList(Arrays.copyOf(best, n));
+	}
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The state of a {@link main.Parser} that allows to continue the correction of a file in a
+ * later session without searching the file for mistakes again: the mistakes, which of
+ * them are still valid, the spellings ignored, the corrections made and the position of
+ * the parser. The snapshot is stored in a compact binary file in the directory from
+ * {@link FileHelpers#getStateDir(String)}. It is only used if the content of the file
+ * (identified by its SHA-256 hash) and the dictionaries (see {@link Checker#fingerprint()})
+ * are the same as when it was written.
+ * <p>
+ * Spellings are stored only once, every mistake refers to its spelling by number.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+final class Session {
+
+	/** Marks a session snapshot, set to {@value} ("TTSESS01") */
+	private static final long MAGIC = 0x5454534553533031L;
+
+	/** The number of the line of each mistake */
+	final int[] lines;
+	/** The position of each mistake in its line */
+	final int[] columns;
+	/** The spelling of each mistake */
+	final String[] words;
+	/** The valid mistakes */
+	final BitSet valid;
+	/** The number of the mistake the parser is at */
+	final int cursor;
+	/** The spellings ignored */
+	final List<String> ignored;
+	/** The corrections made */
+	final List<PieceTable.Correction> corrections;
+
+	private Session(int[] lines, int[] columns, String[] words, BitSet valid, int cursor,
+			List<String> ignored, List<PieceTable.Correction> corrections) {
+		this.lines = lines;
+		this.columns = columns;
+		this.words = words;
+		this.valid = valid;
+		this.cursor = cursor;
+		this.ignored = ignored;
+		this.corrections = corrections;
+	}
+
+	/**
+	 * Returns the location of the snapshot for a file.
+	 * @param file the corrected file
+	 * @return the location of the snapshot
+	 */
+	static Path path(Path file) {
+		String source = file.toAbsolutePath().normalize().toString();
+		UUID id = UUID.nameUUIDFromBytes(source.getBytes(StandardCharsets.UTF_8));
+		return FileHelpers.getStateDir("TypoTattler").resolve("session-" + id + ".bin");
+	}
+
+	/**
+	 * Computes the SHA-256 hash of a file.
+	 * @param file a channel to the file
+	 * @return the hash of the content of the file
+	 * @throws IOException if the file cannot be read
+	 */
+	static byte[] hash(FileChannel file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Every Java platform is required to support SHA-256", e);
+		}
+		ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+		long pos = 0;
+		int n;
+		while((n = file.read(buf, pos)) > 0) {
+			pos += n;
+			buf.flip();
+			digest.update(buf);
+			buf.clear();
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Writes a snapshot, replacing the previous one atomically.
+	 * @param snapshot the location of the snapshot
+	 * @param hash the hash of the corrected file
+	 * @param key the fingerprint of the dictionaries
+	 * @param mistakes the mistakes in the order they occur in the text
+	 * @param valid the valid mistakes
+	 * @param cursor the number of the mistake the parser is at
+	 * @param ignored the spellings ignored
+	 * @param corrections the corrections made
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	static void write(Path snapshot, byte[] hash, String key, Occurrences mistakes, BitSet valid, int cursor,
+			Collection<String> ignored, List<PieceTable.Correction> corrections) throws IOException {
+		Files.createDirectories(snapshot.getParent());
+		Path tmp = Files.createTempFile(snapshot.getParent(), snapshot.getFileName().toString(), ".tmp");
+		try {
+			try(var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))){
+				out.writeLong(MAGIC);
+				out.writeUTF(key);
+				out.writeInt(hash.length);
+				out.write(hash);
+				out.writeInt(cursor);
+
+				var ids = new HashMap<String, Integer>();
+				var words = new ArrayList<String>();
+				for(int i = 0; i < mistakes.size(); i++) {
+					if(ids.putIfAbsent(mistakes.word(i), words.size()) == null) words.add(mistakes.word(i));
+				}
+				out.writeInt(words.size());
+				for(String w: words) out.writeUTF(w);
+
+				out.writeInt(mistakes.size());
+				for(int i = 0; i < mistakes.size(); i++) {
+					out.writeInt(mistakes.line(i));
+					out.writeInt(mistakes.column(i));
+					out.writeInt(ids.get(mistakes.word(i)));
+					out.writeBoolean(valid.get(i));
+				}
+
+				out.writeInt(ignored.size());
+				for(String w: ignored) out.writeUTF(w);
+
+				out.writeInt(corrections.size());
+				for(PieceTable.Correction c: corrections) {
+					out.writeInt(c.line());
+					out.writeInt(c.start());
+					out.writeInt(c.end());
+					out.writeUTF(c.text());
+				}
+			}
+			Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Reads a snapshot.
+	 * @param snapshot the location of the snapshot
+	 * @param hash the hash of the corrected file
+	 * @param key the fingerprint of the dictionaries
+	 * @return the snapshot or null if it does not exist, is damaged or was written for a
+	 * different file content or different dictionaries
+	 */
+	static Session read(Path snapshot, byte[] hash, String key) {
+		try(var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))){
+			if(in.readLong() != MAGIC || !in.readUTF().equals(key)) return null;
+			byte[] stored = new byte[in.readInt()];
+			in.readFully(stored);
+			if(!Arrays.equals(stored, hash)) return null;
+			int cursor = in.readInt();
+
+			String[] spellings = new String[in.readInt()];
+			for(int i = 0; i < spellings.length; i++) spellings[i] = in.readUTF();
+
+			int n = in.readInt();
+			int[] lines = new int[n], columns = new int[n];
+			String[] words = new String[n];
+			BitSet valid = new BitSet(n);
+			for(int i = 0; i < n; i++) {
+				lines[i] = in.readInt();
+				columns[i] = in.readInt();
+				words[i] = spellings[in.readInt()];
+				valid.set(i, in.readBoolean());
+			}
+
+			var ignored = new ArrayList<String>();
+			for(int i = in.readInt(); i > 0; i--) ignored.add(in.readUTF());
+
+			var corrections = new ArrayList<PieceTable.Correction>();
+			for(int i = in.readInt(); i > 0; i--) {
+				corrections.add(new PieceTable.Correction(in.readInt(), in.readInt(), in.readInt(), in.readUTF()));
+			}
+			return new Session(lines, columns, words, valid, cursor, ignored, corrections);
+		} catch(IOException | RuntimeException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A bounded cache of the suggestions for misspellings that is kept on disk between
+ * sessions. When it is full, the misspelling used least recently is dropped. The file
+ * starts with a key identifying the dictionary the suggestions were computed with; a file
+ * with a different key is ignored. Every following line contains a misspelling and its
+ * suggestions, separated by tabs, from the least to the most recently used.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+class SuggestionCache {
+
+	/** The location of the cache file */
+	private final Path file;
+	/** The cached suggestions in the order they were used, the least recently used first */
+	private final LinkedHashMap<String, String[]> entries;
+	/** True if the entries were changed since they were loaded */
+	private boolean dirty = false;
+
+	/**
+	 * Constructor. Loads the cache file if it was written with the same key. A missing,
+	 * stale or damaged file results in an empty cache.
+	 * @param file the location of the cache file
+	 * @param key identifies the dictionary the suggestions are computed with
+	 * @param capacity the maximum number of cached misspellings
+	 */
+	SuggestionCache(Path file, String key, int capacity) {
+		this.file = requireNonNull(file);
+		requireNonNull(key);
+		entries = new LinkedHashMap<String, String[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+				return size() > capacity;
+			}
+		};
+
+		try(BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+			if(!key.equals(reader.readLine())) return;
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] fields = line.split("\t", -1);
+				String[] suggestions = new String[fields.length -1];
+				System.arraycopy(fields, 1, suggestions, 0, suggestions.length);
+				entries.put(fields[0], suggestions);
+			}
+		} catch(NoSuchFileException e) {
+			//Nothing cached yet
+		} catch(IOException e) {
+			entries.clear();
+		}
+	}
+
+	/**
+	 * @param word a misspelling (in lowercase)
+	 * @return the cached suggestions for word or null if there are none
+	 */
+	synchronized String[] get(String word) {
+		String[] suggestions = entries.get(word);
+		if(suggestions != null) dirty = true; //the order of the entries changed
+		return suggestions;
+	}
+
+	/**
+	 * Caches the suggestions for a misspelling. Suggestions containing tabs or line breaks
+	 * cannot be stored and are not cached.
+	 * @param word a misspelling (in lowercase)
+	 * @param suggestions the suggestions for word
+	 */
+	synchronized void put(String word, String[] suggestions) {
+		if(storable(word)) {
+			for(String s: suggestions) if(!storable(s)) return;
+			entries.put(word, suggestions);
+			dirty = true;
+		}
+	}
+
+	/**
+	 * @param s a String
+	 * @return true if s can be stored in a line of the cache file
+	 */
+	private static boolean storable(String s) {
+		return s.indexOf('\t') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0;
+	}
+
+	/**
+	 * Removes all misspellings within a distance of radius to word. Needed when word is
+	 * added to the dictionary, since it may be a suggestion for them.
+	 * @param word the word added to the dictionary
+	 * @param radius the maximum distance of a suggestion to its misspelling
+	 */
+	synchronized void invalidate(String word, int radius) {
+		var metric = new EditDistance(word, radius);
+		for(Iterator<String> it = entries.keySet().iterator(); it.hasNext();) {
+			if(metric.distance(it.next()) <= radius) {
+				it.remove();
+				dirty = true;
+			}
+		}
+	}
+
+	/**
+	 * Writes the cache to its file, unless it was not changed. The file is replaced
+	 * atomically, so concurrent sessions never read a partially written file.
+	 * @param key identifies the dictionary the suggestions were computed with
+	 * @throws IOException if the file cannot be written
+	 */
+	synchronized void save(String key) throws IOException {
+		if(!dirty) return;
+		Files.createDirectories(file.getParent());
+		Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try(BufferedWriter w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)){
+				w.write(key);
+				w.newLine();
+				for(Map.Entry<String, String[]> e: entries.entrySet()) {
+					w.write(e.getKey());
+					for(String s: e.getValue()) {
+						w.write('\t');
+						w.write(s);
+					}
+					w.newLine();
+				}
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			dirty = false;
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+}
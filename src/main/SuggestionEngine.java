@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An index over the words of a dictionary that is able to find the words that are
+ * similar to a given word. Used by {@link main.Checker#guess(String)}.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+interface SuggestionEngine {
+
+	/** A word found by {@link SuggestionEngine#search(String, int)} and its distance to the query */
+	record Match(String word, int dist) {};
+
+	/** Orders matches by their distance and alphabetically if the distances are equal */
+	Comparator<Match> order = Comparator.comparingInt(Match::dist).thenComparing(Match::word);
+
+	/**
+	 * Adds a word to the index.
+	 * @param word the lowercase word to add
+	 */
+	void add(String word);
+
+	/**
+	 * Collects the words with a distance of at most radius to query. Implementations may
+	 * return additional words with a larger distance, which have to be filtered by the caller.
+	 * Implementations may also drop matches, as long as the best limit of them (according
+	 * to {@link #order}) are kept.
+	 * @param query the lowercase word to search similar words for
+	 * @param radius the maximum distance of a match to query
+	 * @param limit the number of matches the caller is interested in
+	 * @return the matches in no particular order
+	 */
+	List<Match> search(String query, int radius, int limit);
+
+	/**
+	 * Prepares the index for being searched by several threads at once. No words may be
+	 * added afterwards. Indexes that do not change during a search need not do anything.
+	 */
+	default void seal() {}
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A symmetric-delete-index over the words of a dictionary (as popularized by SymSpell).
+ * For every word all variants with up to {@value #maxdeletes} characters deleted from its
+ * prefix are precomputed. A query generates its own delete-variants and only the words
+ * sharing at least one variant are compared with the query. This trades a considerable
+ * amount of memory for a much lower number of edit-distance-computations.
+ * <p>
+ * The variants are not stored as Strings but as 32-bit hashes, each packed together with
+ * the id of its word into a sorted long array. Hash collisions only lead to additional
+ * candidates, which are removed when the actual distance is computed.
+ * <p>
+ * All words within a distance of {@value #maxdeletes} are found, words with a larger
+ * distance only if they happen to share a variant with the query.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ * @see <a href="https://github.com/wolfgarbe/SymSpell">SymSpell</a>
+ */
+class SymSpellIndex implements SuggestionEngine {
+
+	/** The maximum number of characters deleted from a word (as generated by {@link #variants(String)}), set to {@value} */
+	private static final int maxdeletes = 2;
+	/** The number of leading characters of a word the variants are generated from, set to {@value} */
+	private static final int prefixlength = 7;
+	/** The number of entries that may be added after the last sort before sorting again, set to {@value} */
+	private static final int maxunsorted = 4096;
+
+	/** The indexed words, the position of a word is its id */
+	private final ArrayList<String> words = new ArrayList<>();
+
+	/** The hash of a variant in the upper and the id of its word in the lower 32 bits */
+	private long[] entries = new long[1 << 16];
+	/** The number of used entries in {@link #entries} */
+	private int count = 0;
+	/** The entries up to this index are sorted */
+	private int sorted = 0;
+
+	/**
+	 * Computes the hash of the first len characters of word without the characters at the
+	 * positions skip1 and skip2.
+	 * @param word the word to hash
+	 * @param len the length of the prefix to hash
+	 * @param skip1 the position of the first deleted character or -1
+	 * @param skip2 the position of the second deleted character or -1
+	 * @return the FNV-1a-hash of the variant
+	 */
+	private static int hash(String word, int len, int skip1, int skip2) {
+		int h = 0x811C9DC5;
+		for(int i = 0; i < len; i++) {
+			if(i == skip1 || i == skip2) continue;
+			h = (h ^ word.charAt(i)) * 0x01000193;
+		}
+		return h;
+	}
+
+	/**
+	 * Generates the hashes of all variants of the prefix of word with up to
+	 * {@value #maxdeletes} characters deleted.
+	 * @param word the word to generate the variants of
+	 * @return the hashes of the variants (may contain duplicates)
+	 */
+	private static int[] variants(String word) {
+		final int len = Math.min(word.length(), prefixlength);
+		int[] hashes = new int[1 + len + len * (len -1) / 2];
+		int n = 0;
+		hashes[n++] = hash(word, len, -1, -1);
+		for(int i = 0; i < len; i++) {
+			hashes[n++] = hash(word, len, i, -1);
+			for(int j = i +1; j < len; j++) {
+				hashes[n++] = hash(word, len, i, j);
+			}
+		}
+		return Arrays.copyOf(hashes, n);
+	}
+
+	@Override
+	public void add(String word) {
+		requireNonNull(word);
+		final long id = words.size();
+		words.add(word);
+		int[] hashes = variants(word);
+		if(count + hashes.length > entries.length) {
+			entries = Arrays.copyOf(entries, Math.max(entries.length * 2, count + hashes.length));
+		}
+		for(int h: hashes) {
+			entries[count++] = ((long) h << 32) | id;
+		}
+	}
+
+	/**
+	 * Finds the first entry in the sorted part of {@link #entries} belonging to a variant
+	 * with the hash h.
+	 * @param h the hash of the variant
+	 * @return the index of the first entry with a hash greater or equal to h
+	 */
+	private int lowerBound(int h) {
+		final long key = (long) h << 32;
+		int L = 0, R = sorted;
+		while(L < R) {
+			int m = (L + R) >>> 1;
+			if(entries[m] < key) {
+				L = m +1;
+			} else {
+				R = m;
+			}
+		}
+		return L;
+	}
+
+	/**
+	 * Checks the word with the given id, if it was not checked before.
+	 * @param id the id of the candidate
+	 * @param metric the distance to the query, bounded by the maximum distance of a match
+	 * @param seen the ids of the words already checked
+	 * @param matches the list the candidate is added to if it matches
+	 */
+	private void check(int id, EditDistance metric, BitSet seen, List<Match> matches) {
+		if(seen.get(id)) return;
+		seen.set(id);
+		String word = words.get(id);
+		int dist = metric.distance(word);
+		if(dist <= metric.max()) matches.add(new Match(word, dist));
+	}
+
+	/**
+	 * Sorts all entries, so searches no longer sort them on the fly.
+	 */
+	@Override
+	public void seal() {
+		Arrays.sort(entries, 0, count);
+		sorted = count;
+	}
+
+	@Override
+	public List<Match> search(String query, int radius, int limit) {
+		requireNonNull(query);
+		if(count - sorted > maxunsorted) {
+			Arrays.sort(entries, 0, count);
+			sorted = count;
+		}
+
+		var metric = new EditDistance(query, radius);
+		var matches = new ArrayList<Match>();
+		var seen = new BitSet(words.size());
+		int[] hashes = variants(query);
+		for(int h: hashes) {
+			for(int i = lowerBound(h); i < sorted && (int) (entries[i] >> 32) == h; i++) {
+				check((int) entries[i], metric, seen, matches);
+			}
+		}
+
+		//Entries added since the last sort
+		for(int i = sorted; i < count; i++) {
+			int h = (int) (entries[i] >> 32);
+			for(int qh: hashes) {
+				if(qh == h) {
+					check((int) entries[i], metric, seen, matches);
+					break;
+				}
+			}
+		}
+		return matches;
+	}
+}
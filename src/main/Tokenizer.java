@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Breaks a line of text into words with a single pass over its characters. Words are
+ * separated by the POSIX character classes (US-ASCII only) for whitespace-, control-,
+ * digit- and punctuation-characters. The latter excludes apostrophes between two word
+ * characters, e.g. the apostrophe is kept in <pre>
+ * 		- "wasn't"
+ * 		- "I'd"
+ * 		- "1's" -> "'s" (the digit is a separator)
+ * 		- "d'accord"
+ * but the text is split at all apostrophes in
+ * 		- "Greeces' beaches" -> "Greeces", "beaches"
+ * 		- "the boys' room" -> "the", "boys", "room"
+ * 		- "the so called 'coolest dude'" -> "the", "so", "called, "coolest", "dude"
+ * 		- "its'" -> "its"
+ * </pre>
+ * This matches splitting the text with the regex
+ * <code>(?!\b'\b)\p{Punct}|\p{Space}|\p{Cntrl}|\p{Digit}</code> and dropping the empty
+ * parts. Instead of substrings the tokenizer reports the positions of the words, so the
+ * caller only has to create Strings for the words it is interested in.
+ * <pre>
+ * 	tokenizer.reset(line);
+ * 	while(tokenizer.next()) {
+ * 		line.subSequence(tokenizer.start(), tokenizer.end());
+ * 	}
+ * </pre>
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+final class Tokenizer {
+
+	/** The text being tokenized */
+	private CharSequence text = "";
+	/** The position after the last character of the tokenized range */
+	private int limit = 0;
+	/** The position of the first character of the tokenized range */
+	private int origin = 0;
+	/** The position of the first character of the current word */
+	private int start = 0;
+	/** The position after the last character of the current word */
+	private int end = 0;
+
+	/**
+	 * Starts tokenizing the characters of text in [from, to).
+	 * @param text the text to tokenize
+	 * @param from the position of the first character to tokenize
+	 * @param to the position after the last character to tokenize
+	 */
+	void reset(CharSequence text, int from, int to) {
+		this.text = requireNonNull(text);
+		java.util.Objects.checkFromToIndex(from, to, text.length());
+		origin = from;
+		limit = to;
+		start = end = from;
+	}
+
+	/**
+	 * Starts tokenizing text.
+	 * @param text the text to tokenize
+	 */
+	void reset(CharSequence text) {
+		reset(text, 0, text.length());
+	}
+
+	/**
+	 * Advances to the next word.
+	 * @return true if there was another word, false if the end of the text has been reached
+	 */
+	boolean next() {
+		int i = end;
+		while(i < limit && isSeparator(i)) i++;
+		if(i == limit) {
+			start = end = limit;
+			return false;
+		}
+		start = i;
+		while(i < limit && !isSeparator(i)) i++;
+		end = i;
+		return true;
+	}
+
+	/**
+	 * @return the position of the first character of the current word
+	 */
+	int start() {
+		return start;
+	}
+
+	/**
+	 * @return the position after the last character of the current word
+	 */
+	int end() {
+		return end;
+	}
+
+	/**
+	 * @param i the position of a character in {@link #text}
+	 * @return true if the character at i separates two words
+	 */
+	private boolean isSeparator(int i) {
+		char c = text.charAt(i);
+		if(c >= 0x80) return false;
+		if(c <= 0x20 || c == 0x7F) return true;  //\p{Cntrl}, \p{Space}
+		if(c >= '0' && c <= '9') return true;    //\p{Digit}
+		if(Character.isLetter(c)) return false;
+		//\p{Punct}, except for an apostrophe between two word boundaries
+		return c != '\'' || !(isWordBefore(i) && isWordAt(i +1));
+	}
+
+	/**
+	 * Non-spacing marks only count as part of a word, if they belong to a letter or digit.
+	 * @param i a position in {@link #text}
+	 * @return true if the code point ending before i counts as part of a word for \b
+	 */
+	private boolean isWordBefore(int i) {
+		if(i <= origin) return false;
+		int cp = Character.codePointBefore(text, i);
+		if(cp == '_' || Character.isLetterOrDigit(cp)) return true;
+		while(Character.getType(cp) == Character.NON_SPACING_MARK) {
+			i -= Character.charCount(cp);
+			if(i <= origin) return false;
+			cp = Character.codePointBefore(text, i);
+			if(Character.isLetterOrDigit(cp)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Called for the position after an apostrophe, so a non-spacing mark at i never has a
+	 * letter or digit it belongs to.
+	 * @param i a position in {@link #text}
+	 * @return true if the code point starting at i counts as part of a word for \b
+	 */
+	private boolean isWordAt(int i) {
+		if(i >= limit) return false;
+		int cp = Character.codePointAt(text, i);
+		return cp == '_' || Character.isLetterOrDigit(cp);
+	}
+}
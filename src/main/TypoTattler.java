@@ -37,6 +37,10 @@ public class TypoTattler {
 	private final Input in;
 	/** The path to the file in need of correction*/
 	private Path toEdit;
+	/** Computes the suggestions for the upcoming mistakes while waiting for the user */
+	private final Prefetcher prefetcher;
+	/** The number of upcoming mistakes {@link #prefetcher} computes suggestions for, set to {@value} */
+	private static final int prefetchcount = 5;
 
 
 	/**
@@ -51,7 +55,7 @@ public class TypoTattler {
 	 * @return an initialized dictionary
 	 * @throws IOException if none of the dictionaries can be found or they are inaccessible
 	 */
-	private Checker initChecker() throws IOException {
+	private static Checker initChecker() throws IOException {
 
 		Checker checker = null;
 		final Path WORDPATH1 = Path.of("/usr/share/dict/words");
@@ -89,23 +93,17 @@ public class TypoTattler {
 	}
 
 	/**
-	 * Constructor. Validates the command line arguments and tries to
-	 * handle errors.
-	 * @param args The command line arguments for the program
-	 * @throws IOException when there was a problem with the dicts or with the file provided for editing
+	 * Initializes the {@link main.Checker} with the dictionary provided with the command line
+	 * arguments. If there was none or if it was invalid {@link #initChecker()} is used instead.
+	 * @param dictarg the dictionary provided with the command line arguments or null
+	 * @return an initialized dictionary
+	 * @throws IOException if none of the dictionaries can be found or they are inaccessible
 	 */
-	public TypoTattler(String[] args) throws IOException {
-		if(args.length < 1 && args.length > 2) {
-			throw new IllegalArgumentException("Unexpected number of arguments"); 
-		}
-
-		args[0] = FileHelpers.expandUser(args[0]);
-		toEdit = Paths.get(args[0]);
+	static Checker initChecker(String dictarg) throws IOException {
 		Checker checker = null;
 
-		if(args.length == 2) {
-			args[1]  = FileHelpers.expandUser(args[1]);
-			Path dict = Paths.get(args[1]);
+		if(dictarg != null) {
+			Path dict = Paths.get(FileHelpers.expandUser(dictarg));
 			try {
 				checker = new Checker(dict);
 			} catch (IOException e) {
@@ -116,9 +114,28 @@ public class TypoTattler {
 		}
 
 		if(checker == null) checker = initChecker();
+		return checker;
+	}
+
+	/**
+	 * Constructor. Validates the command line arguments and tries to
+	 * handle errors.
+	 * @param args The command line arguments for the program
+	 * @throws IOException when there was a problem with the dicts or with the file provided for editing
+	 */
+	public TypoTattler(String[] args) throws IOException {
+		if(args.length < 1 && args.length > 2) {
+			throw new IllegalArgumentException("Unexpected number of arguments"); 
+		}
+
+		args[0] = FileHelpers.expandUser(args[0]);
+		toEdit = Paths.get(args[0]);
+		Checker checker = initChecker((args.length == 2)? args[1] : null);
 
 		p = new Parser(toEdit, checker);
+		if(p.resumed()) System.out.println("Continuing where the last session ended.");
 		in = new Input();
+		prefetcher = new Prefetcher(checker);
 	}
 
 	/** The {@link main.Mistake} to be analyzed and edited by the user*/
@@ -128,7 +145,9 @@ public class TypoTattler {
 
 	/**
 	 * Iterates through the text {@link main.Mistake} by {@link main.Mistake} guided by
-	 * user input, offering various operations for correcting them.
+	 * user input, offering various operations for correcting them. While waiting for
+	 * input, the suggestions for the current and the following mistakes are computed in
+	 * the background.
 	 */
 	public void mainloop() throws IOException {
 		final List<String> options = List.<String>of("next", "previous", "suggestions", 
@@ -141,6 +160,7 @@ public class TypoTattler {
 
 		char c;
 		while(noExit) {
+			prefetcher.prefetch(p.upcoming(prefetchcount));
 			c = in.getC(possibleAnswers);
 			switch (c) {
 			case 'e' -> exit();
@@ -224,8 +244,9 @@ public class TypoTattler {
 	/**
 	 * Gets called, if the end of the file has been reached or via direct request from
 	 * the user. Breaks the loop in {@link TypoTattler#mainloop()}, saves the
-	 * file {@link TypoTattler#toEdit} if any changes have been made and closes
-	 * {@link TypoTattler#in}. Because of the latter it must be the only exit point for
+	 * file {@link TypoTattler#toEdit} if any changes have been made, closes the
+	 * {@link main.Checker} (saving its cached suggestions), saves the session (see
+	 * {@link Parser#saveSession()}), closes the {@link main.Parser} and {@link TypoTattler#in}. Because of the latter it must be the only exit point for
 	 * the mainloop (aside from any fatal crashes).
 	 * @throws IOException if an I/O-Error while closing {@link TypoTattler#in} occurs
 	 */
@@ -233,7 +254,17 @@ public class TypoTattler {
 		if(in.getChar("Exit?", Input.yesNo) == 'y') {
 			noExit = false;
 			if(writeToDisk) w2d();
-			in.close();
+			prefetcher.close();
+			p.saveSession();
+			try {
+				try {
+					p.checker.close();
+				} finally {
+					p.close();
+				}
+			} finally {
+				in.close();
+			}
 		}
 	}
 
@@ -289,9 +320,10 @@ public class TypoTattler {
 	 */
 	private void goToLine() throws IOException {
 		int i = in.readInt("Go to line: ", 0, p.lines.size());
+		prefetcher.cancel(); //the upcoming mistakes change with the position
 		p.toLine(i-1); //toLine() works with zero-based numbers -> i-1
 		Mistake m = p.next();
-		if(!m.valid) {
+		if(!m.isValid()) {
 			next();
 		}else {
 			current = m;
@@ -320,7 +352,7 @@ public class TypoTattler {
 		char c = 'n';
 		List<String> failed = null;
 
-		if(current.next != null) {
+		if(current.next() != null) {
 			c = in.getChar(current.wrongword + " was found more than once. Replace all? ", Input.yesNoCancel);
 		}
 
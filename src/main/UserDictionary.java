@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.function.Consumer;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The file the user adds words to, one lowercase word per line. New words are collected in
+ * memory and appended in batches through a channel that stays open, instead of opening the
+ * file for every word. A caller adding words one at a time on behalf of the user (see
+ * {@link Checker#addToUsrDict(String)}) calls {@link #flush()} after each of them, so no
+ * word waits for the batch to fill up. {@link #close()} writes the remaining words and
+ * forces them to the disk.
+ * <p>
+ * Words already in the file are not appended again. If the file still contains many
+ * duplicates (e.g. written by an older version or merged by hand), it is compacted when it
+ * is opened: the distinct words are written sorted into a new file, which atomically
+ * replaces the old one. Appends and compactions take a lock on the file, so several
+ * processes (e.g. a {@link main.Daemon} and an interactive session) can share it; a
+ * process that finds the file replaced by a compaction reopens it before appending.
+ * The class is not thread-safe.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+final class UserDictionary implements AutoCloseable {
+
+	/** The number of characters collected before they are appended to the file, set to {@value} */
+	private static final int batchsize = 8192;
+	/** The number of redundant lines tolerated before the file is compacted, set to {@value} */
+	private static final int mindupes = 64;
+
+	/** The location of the file */
+	private final Path file;
+	/** The distinct words in the file (or about to be appended to it) */
+	private final HashSet<String> words = new HashSet<>();
+	/** The words not appended yet, each followed by {@link System#lineSeparator()} */
+	private final StringBuilder pending = new StringBuilder();
+	/** The channel the words are appended through */
+	private FileChannel channel;
+	/** Identifies the file {@link #channel} was opened for */
+	private Object filekey;
+	/** Order-independent hash over {@link #words} */
+	private long digest = 0;
+
+	private UserDictionary(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Opens a user dictionary and passes its words on. The file is created if it does not
+	 * exist and compacted if it contains too many duplicates.
+	 * @param file the location of the user dictionary
+	 * @param receiver receives each distinct (lowercase) word of the file
+	 * @return the opened user dictionary
+	 * @throws IOException if the file cannot be created, read or opened for appending
+	 */
+	static UserDictionary open(Path file, Consumer<String> receiver) throws IOException {
+		requireNonNull(file); requireNonNull(receiver);
+		var dict = new UserDictionary(file);
+		dict.reopen();
+		boolean compacted = false;
+		try {
+			FileLock lock = dict.channel.lock();
+			try {
+				int lines = dict.read();
+				if(lines - dict.words.size() >= Math.max(mindupes, dict.words.size())) {
+					dict.compact();
+					compacted = true;
+				}
+			} finally {
+				lock.release();
+			}
+		} catch(IOException e) {
+			dict.channel.close();
+			throw e;
+		}
+		if(compacted) dict.reopen();
+		dict.words.forEach(receiver);
+		return dict;
+	}
+
+	/**
+	 * Opens {@link #channel} for appending to the current version of the file.
+	 * @throws IOException if the file cannot be opened
+	 */
+	private void reopen() throws IOException {
+		if(channel != null) channel.close();
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		filekey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+	}
+
+	/**
+	 * @return true if the file was replaced (e.g. compacted by another process) since
+	 * {@link #channel} was opened
+	 * @throws IOException if the attributes of the file cannot be read
+	 */
+	private boolean replaced() throws IOException {
+		return filekey == null || !Files.exists(file)
+				|| !filekey.equals(Files.readAttributes(file, BasicFileAttributes.class).fileKey());
+	}
+
+	/**
+	 * Reads the words of the file into {@link #words}.
+	 * @return the number of lines in the file
+	 * @throws IOException if the file cannot be read
+	 */
+	private int read() throws IOException {
+		int lines = 0;
+		try(var reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))){
+			String word;
+			while((word = reader.readLine()) != null) {
+				lines++;
+				word = word.toLowerCase();
+				if(words.add(word)) digest += mix(word);
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Writes the distinct words sorted into a new file, which replaces the file atomically.
+	 * Has to be called while holding a lock on {@link #channel}.
+	 * @throws IOException if the new file cannot be written
+	 */
+	private void compact() throws IOException {
+		var sorted = new ArrayList<String>(words);
+		Collections.sort(sorted);
+		Path tmp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try(FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE);
+					BufferedWriter writer = new BufferedWriter(Channels.newWriter(out, StandardCharsets.UTF_8))){
+				for(String word: sorted) {
+					writer.write(word);
+					writer.write(System.lineSeparator());
+				}
+				writer.flush();
+				out.force(false);
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * @param word a word
+	 * @return the contribution of word to {@link #digest}
+	 */
+	private static long mix(String word) {
+		long h = word.hashCode() * 0x9E3779B97F4A7C15L;
+		return h ^ (h >>> 29);
+	}
+
+	/**
+	 * Adds a word, unless the file already contains it. The word is appended together with
+	 * the next batch.
+	 * @param word the word to add
+	 * @return true if the word was new
+	 * @throws IOException if the batch was full and could not be appended to the file
+	 */
+	boolean add(String word) throws IOException {
+		word = requireNonNull(word).toLowerCase();
+		if(!words.add(word)) return false;
+		digest += mix(word);
+		pending.append(word).append(System.lineSeparator());
+		if(pending.length() >= batchsize) flush();
+		return true;
+	}
+
+	/**
+	 * Appends the collected words to the file. Reopens the file first if it was replaced.
+	 * @throws IOException if the words cannot be appended
+	 */
+	void flush() throws IOException {
+		if(pending.length() == 0) return;
+		if(replaced()) reopen();
+		ByteBuffer buf = StandardCharsets.UTF_8.encode(pending.toString());
+		while(true) {
+			FileLock lock = channel.lock();
+			try {
+				if(!replaced()) {
+					while(buf.hasRemaining()) channel.write(buf);
+					break;
+				}
+			} finally {
+				lock.release();
+			}
+			reopen(); //compacted after the last check, but before the lock was acquired
+		}
+		pending.setLength(0);
+	}
+
+	/**
+	 * Creates a key identifying the set of words in the user dictionary. Unlike the size
+	 * or the modification time of the file, it neither changes when the file is compacted
+	 * nor depends on whether the words were already appended.
+	 * @return the key for the current words
+	 */
+	String key() {
+		return words.size() + ":" + Long.toHexString(digest);
+	}
+
+	/**
+	 * Appends the remaining words, forces them to the disk and closes the file.
+	 * @throws IOException if the words cannot be appended or forced to the disk
+	 */
+	@Override
+	public void close() throws IOException {
+		if(!channel.isOpen()) return;
+		try {
+			flush();
+			channel.force(false);
+		} finally {
+			channel.close();
+		}
+	}
+}
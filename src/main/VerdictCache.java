@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.util.Arrays;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Remembers for every distinct token whether {@link main.Checker} considered it a mistake,
+ * so a token that occurs again is neither case-folded nor looked up in the dictionary a
+ * second time. The tokens are compared exactly as they appear in the text. Like
+ * {@link main.WordTable} the cache is an open-addressing hash table of primitive arrays,
+ * so neither a lookup nor storing a token allocates an object.
+ * <p>
+ * The verdicts are only valid as long as the dictionary does not change, so a cache is
+ * meant to be used for a single parse. It is not thread-safe.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+final class VerdictCache {
+
+	/** The maximum number of tokens stored, set to {@value}. A full cache is cleared. */
+	private static final int maxtokens = 1 << 16;
+
+	/** The checker deciding about the tokens that are not in the cache yet */
+	private final Checker checker;
+	/** The number of the token stored in a slot plus one, 0 marks an empty slot */
+	private final int[] slots = new int[maxtokens * 2];
+	/** The hash of each token */
+	private final int[] hashes = new int[maxtokens];
+	/** The characters of token i are stored in the positions [starts[i], starts[i +1]) of {@link #pool} */
+	private final int[] starts = new int[maxtokens +1];
+	/** true if token i is a mistake */
+	private final boolean[] verdicts = new boolean[maxtokens];
+	/** The characters of all tokens */
+	private char[] pool = new char[maxtokens * 4];
+	/** The number of tokens in the cache */
+	private int size = 0;
+	/** The number of tokens passed on to {@link #checker} */
+	private long lookups = 0;
+	/** The number of tokens checked */
+	private long tokens = 0;
+
+	/**
+	 * Constructor.
+	 * @param checker the checker deciding about the tokens that are not in the cache yet
+	 */
+	VerdictCache(Checker checker) {
+		this.checker = requireNonNull(checker);
+	}
+
+	/**
+	 * Computes the hash of the characters of text in [start, end).
+	 * @param text the text containing the token
+	 * @param start the position of the first character of the token
+	 * @param end the position after the last character of the token
+	 * @return the hash of the token
+	 */
+	private static int hash(CharSequence text, int start, int end) {
+		int h = 0;
+		for(int i = start; i < end; i++) h = 31 * h + text.charAt(i);
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Checks if the token in [start, end) of text is a mistake according to
+	 * {@link Checker#isMistake(CharSequence, int, int)}, asking the checker only the first
+	 * time the token is encountered.
+	 * @param text the text containing the token
+	 * @param start the position of the first character of the token
+	 * @param end the position after the last character of the token
+	 * @return true if the token is a mistake
+	 */
+	boolean isMistake(CharSequence text, int start, int end) {
+		tokens++;
+		final int h = hash(text, start, end);
+		final int len = end - start;
+		final int mask = slots.length -1;
+		int slot = h & mask;
+		for(;; slot = (slot +1) & mask) {
+			int id = slots[slot] -1;
+			if(id < 0) break;
+			if(hashes[id] != h || starts[id +1] - starts[id] != len) continue;
+			int p = starts[id];
+			int i = start;
+			while(i < end && pool[p] == text.charAt(i)) {
+				i++; p++;
+			}
+			if(i == end) return verdicts[id];
+		}
+
+		lookups++;
+		boolean verdict = checker.isMistake(text, start, end);
+		if(size == maxtokens) {
+			Arrays.fill(slots, 0);
+			size = 0;
+			slot = h & mask;
+		}
+		final int p = starts[size];
+		if(p + len > pool.length) pool = Arrays.copyOf(pool, Math.max(pool.length * 2, p + len));
+		for(int i = 0; i < len; i++) pool[p + i] = text.charAt(start + i);
+		hashes[size] = h;
+		verdicts[size] = verdict;
+		starts[size +1] = p + len;
+		slots[slot] = ++size;
+		return verdict;
+	}
+
+	/**
+	 * @return the number of tokens checked
+	 */
+	long tokens() {
+		return tokens;
+	}
+
+	/**
+	 * @return the number of tokens that were not in the cache and were passed on to the checker
+	 */
+	long lookups() {
+		return lookups;
+	}
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.util.function.Consumer;
+
+/**
+ * A read-only set of lowercase words, used by {@link main.Checker} to store the
+ * dictionary.
+ * <p>
+ * Case-folding lookups fold each character with {@link Character#toLowerCase(char)}. This
+ * equals {@link String#toLowerCase()} except for the few characters whose lowercase form
+ * consists of several characters.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+interface WordList {
+
+	/**
+	 * @param word the lowercase word to look up
+	 * @return true if word is contained in this list
+	 */
+	boolean contains(CharSequence word);
+
+	/**
+	 * Checks if the characters of text in [start, end), folded to lowercase one by one, are
+	 * contained in this list. Implementations must not allocate.
+	 * @param text the text containing the word
+	 * @param start the position of the first character of the word
+	 * @param end the position after the last character of the word
+	 * @return true if the case-folded word is contained in this list
+	 */
+	boolean contains(CharSequence text, int start, int end);
+
+	/**
+	 * @return the number of words in this list
+	 */
+	int size();
+
+	/**
+	 * Passes every word in this list to action.
+	 * @param action the action to perform on each word
+	 */
+	void forEach(Consumer<? super String> action);
+}
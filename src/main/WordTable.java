@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2023 Jan Philipp Berg <git.7ksst@aleeas.com>
+ * 
+ * This file is part of TypoTattler.
+ * 
+ * TypoTattler is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either 
+ * version 3 of the License, or (at your option) any later version.
+ * 
+ * TypoTattler is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; 
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with TypoTattler. 
+ * If not, see <https://www.gnu.org/licenses/>. 
+ */
+
+package main;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A {@link main.WordList} stored in an open-addressing hash table made of primitive arrays.
+ * The characters of all words are kept in a single char array and the table only stores
+ * the number of the word in each slot, so neither a lookup nor the table itself needs an
+ * object per word. Words are case-folded when they are added and lookups fold the queried
+ * characters while hashing and comparing them, so a lookup does not allocate.
+ * <p>
+ * Unlike the other word lists the table can grow after it has been created.
+ * @author Jan Philipp Berg
+ * @vers 0.2
+ *
+ */
+class WordTable implements WordList {
+
+	/** The number of the word stored in a slot plus one, 0 marks an empty slot */
+	private int[] slots;
+	/** The hash of each word */
+	private int[] hashes;
+	/** The characters of word i are stored in the positions [starts[i], starts[i +1]) of {@link #pool} */
+	private int[] starts;
+	/** The characters of all words */
+	private char[] pool;
+	/** The number of words in the table */
+	private int size = 0;
+
+	/**
+	 * Constructor. Creates an empty table.
+	 * @param expected the number of words the table should hold without growing
+	 */
+	WordTable(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(expected, 8) * 2 -1) * 2;
+		slots = new int[capacity];
+		hashes = new int[capacity / 2];
+		starts = new int[capacity / 2 +1];
+		pool = new char[capacity * 4];
+	}
+
+	/** Constructor. Creates an empty table for a few words. */
+	WordTable() {
+		this(16);
+	}
+
+	/**
+	 * Computes the hash of the case-folded characters of text in [start, end).
+	 * @param text the text containing the word
+	 * @param start the position of the first character of the word
+	 * @param end the position after the last character of the word
+	 * @return the hash of the case-folded word
+	 */
+	private static int hash(CharSequence text, int start, int end) {
+		int h = 0;
+		for(int i = start; i < end; i++) {
+			h = 31 * h + Character.toLowerCase(text.charAt(i));
+		}
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Searches the slot holding the case-folded word from text in [start, end).
+	 * @param text the text containing the word
+	 * @param start the position of the first character of the word
+	 * @param end the position after the last character of the word
+	 * @param h the hash of the word
+	 * @return the slot of the word or the empty slot it would be stored in
+	 */
+	private int find(CharSequence text, int start, int end, int h) {
+		final int mask = slots.length -1;
+		final int len = end - start;
+		for(int slot = h & mask;; slot = (slot +1) & mask) {
+			int id = slots[slot] -1;
+			if(id < 0) return slot;
+			if(hashes[id] != h || starts[id +1] - starts[id] != len) continue;
+			int p = starts[id];
+			int i = start;
+			while(i < end && pool[p] == Character.toLowerCase(text.charAt(i))) {
+				i++; p++;
+			}
+			if(i == end) return slot;
+		}
+	}
+
+	/**
+	 * Adds the case-folded word to the table.
+	 * @param word the word to add
+	 * @return true if the word was added, false if the table already contained it
+	 */
+	boolean add(CharSequence word) {
+		requireNonNull(word);
+		final int len = word.length();
+		final int h = hash(word, 0, len);
+		int slot = find(word, 0, len, h);
+		if(slots[slot] != 0) return false;
+
+		if(size == hashes.length) {
+			hashes = Arrays.copyOf(hashes, size * 2);
+			starts = Arrays.copyOf(starts, size * 2 +1);
+		}
+		final int p = starts[size];
+		if(p + len > pool.length) pool = Arrays.copyOf(pool, Math.max(pool.length * 2, p + len));
+		for(int i = 0; i < len; i++) pool[p + i] = Character.toLowerCase(word.charAt(i));
+		hashes[size] = h;
+		starts[size +1] = p + len;
+		slots[slot] = ++size;
+
+		if(size * 2 > slots.length) rehash();
+		return true;
+	}
+
+	/**
+	 * Doubles the number of slots and redistributes the words.
+	 */
+	private void rehash() {
+		slots = new int[slots.length * 2];
+		final int mask = slots.length -1;
+		for(int id = 0; id < size; id++) {
+			int slot = hashes[id] & mask;
+			while(slots[slot] != 0) slot = (slot +1) & mask;
+			slots[slot] = id +1;
+		}
+	}
+
+	@Override
+	public boolean contains(CharSequence word) {
+		return contains(word, 0, word.length());
+	}
+
+	@Override
+	public boolean contains(CharSequence text, int start, int end) {
+		return slots[find(text, start, end, hash(text, start, end))] != 0;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void forEach(Consumer<? super String> action) {
+		for(int id = 0; id < size; id++) {
+			action.accept(new String(pool, starts[id], starts[id +1] - starts[id]));
+		}
+	}
+}